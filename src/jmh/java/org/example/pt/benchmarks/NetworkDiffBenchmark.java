@@ -0,0 +1,41 @@
+package org.example.pt.benchmarks;
+
+import org.example.pt.NetworkDiff;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * {@link NetworkDiff} of a grid against a copy with every 10th link changed.
+ */
+@State(Scope.Benchmark)
+public class NetworkDiffBenchmark {
+
+    @Param({"100", "300"})
+    public int gridSize;
+
+    private Network base;
+    private Network other;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        base = SyntheticInputs.grid(gridSize);
+        other = SyntheticInputs.grid(gridSize);
+        int i = 0;
+        for (Link link : other.getLinks().values()) {
+            if (i++ % 10 == 0) {
+                link.setCapacity(link.getCapacity() * 2);
+            }
+        }
+    }
+
+    @Benchmark
+    public NetworkDiff diff() {
+        return NetworkDiff.compare(base, other);
+    }
+}
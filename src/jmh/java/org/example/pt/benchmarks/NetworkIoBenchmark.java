@@ -0,0 +1,63 @@
+package org.example.pt.benchmarks;
+
+import org.example.pt.NetworkSnapshot;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.NetworkUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+
+/**
+ * Network write and read throughput: gzipped XML through MATSim's reader/writer, and the binary snapshot.
+ */
+@State(Scope.Benchmark)
+public class NetworkIoBenchmark {
+
+    @Param({"100", "300"})
+    public int gridSize;
+
+    private Network network;
+    private Path directory;
+    private String xmlFile;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        network = SyntheticInputs.grid(gridSize);
+        directory = Files.createTempDirectory("network-io");
+        xmlFile = directory.resolve("network.xml.gz").toString();
+        NetworkUtils.writeNetwork(network, xmlFile);
+        // creates the snapshot next to the xml file
+        NetworkSnapshot.readNetwork(xmlFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (var files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void writeXml() {
+        NetworkUtils.writeNetwork(network, directory.resolve("written.xml.gz").toString());
+    }
+
+    @Benchmark
+    public Network readXml() {
+        return NetworkUtils.readNetwork(xmlFile);
+    }
+
+    @Benchmark
+    public Network readSnapshot() {
+        return NetworkSnapshot.readNetwork(xmlFile);
+    }
+}
@@ -0,0 +1,46 @@
+package org.example.pt.benchmarks;
+
+import org.example.pt.MergeNetworks;
+import org.example.pt.preparePTNetwork;
+import org.matsim.api.core.v01.network.Network;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * osmID based tram merging ({@link preparePTNetwork#mergeTramNetworkIntoBase}) and mode-union merging
+ * ({@link MergeNetworks#merge}). Both modify the base network, so fresh inputs are generated per invocation.
+ */
+@State(Scope.Benchmark)
+public class NetworkMergeBenchmark {
+
+    @Param({"100", "300"})
+    public int gridSize;
+
+    @Param({"5"})
+    public int tramEvery;
+
+    private Network base;
+    private Network tram;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        base = SyntheticInputs.grid(gridSize);
+        tram = SyntheticInputs.tramNetwork(gridSize, tramEvery);
+    }
+
+    @Benchmark
+    public Network tramMerge() {
+        preparePTNetwork.mergeTramNetworkIntoBase(base, tram);
+        return base;
+    }
+
+    @Benchmark
+    public Network modeUnionMerge() {
+        MergeNetworks.merge(base, tram);
+        return base;
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.pt.benchmarks;
+
+import ch.sbb.matsim.routing.pt.raptor.RaptorStaticConfig;
+import ch.sbb.matsim.routing.pt.raptor.RaptorUtils;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptor;
+import ch.sbb.matsim.routing.pt.raptor.SwissRailRaptorData;
+import org.example.pt.preparePTNetwork;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.router.DefaultRoutingRequest;
+import org.matsim.core.router.LinkWrapperFacility;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SwissRailRaptor route queries between random links of the merged multimodal (grid + tram) network.
+ */
+@State(Scope.Benchmark)
+public class RaptorRouteBenchmark {
+
+    @Param({"100", "300"})
+    public int gridSize;
+
+    @Param({"5"})
+    public int tramEvery;
+
+    private SwissRailRaptor raptor;
+    private List<Link> links;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Network network = SyntheticInputs.grid(gridSize);
+        preparePTNetwork.mergeTramNetworkIntoBase(network, SyntheticInputs.tramNetwork(gridSize, tramEvery));
+        TransitSchedule schedule = SyntheticInputs.tramSchedule(network, gridSize, tramEvery);
+
+        Config config = ConfigUtils.createConfig();
+        RaptorStaticConfig staticConfig = RaptorUtils.createStaticConfig(config);
+        SwissRailRaptorData data = SwissRailRaptorData.create(schedule, null, staticConfig, network, null);
+        raptor = new SwissRailRaptor.Builder(data, config).build();
+
+        links = new ArrayList<>(network.getLinks().values());
+        random = new Random(2025);
+    }
+
+    @Benchmark
+    public List<? extends PlanElement> route() {
+        Link from = links.get(random.nextInt(links.size()));
+        Link to = links.get(random.nextInt(links.size()));
+        return raptor.calcRoute(DefaultRoutingRequest.withoutAttributes(
+                new LinkWrapperFacility(from), new LinkWrapperFacility(to), 8 * 3600, null));
+    }
+}
@@ -0,0 +1,143 @@
+package org.example.pt.benchmarks;
+
+import org.example.pt.OsmIdLinkIndex;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Synthetic inputs of configurable size for the benchmarks.
+ * - Base network: a square grid with two-way streets (car, walk, bike), both directions share one osmID
+ * - Tram network: every {@code tramEvery}-th row of the grid; half of each line runs on the street (same node ids
+ *   and osmIDs as the base), the other half on dedicated track (own osmIDs)
+ * - Schedule: one tram line per tram row with a stop every 4 links, departures every 10 minutes
+ */
+final class SyntheticInputs {
+
+    static final double SPACING = 100.0;
+
+    private SyntheticInputs() {
+    }
+
+    /** Grid of size × size nodes, 4·size·(size-1) links. */
+    static Network grid(int size) {
+        Network network = NetworkUtils.createNetwork();
+        NetworkFactory factory = network.getFactory();
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                network.addNode(factory.createNode(nodeId(row, col), new Coord(col * SPACING, row * SPACING)));
+            }
+        }
+        long osmId = 1;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                if (col + 1 < size) {
+                    addTwoWay(network, row, col, row, col + 1, osmId++, Set.of("car", "walk", "bike"), "residential");
+                }
+                if (row + 1 < size) {
+                    addTwoWay(network, row, col, row + 1, col, osmId++, Set.of("car", "walk", "bike"), "residential");
+                }
+            }
+        }
+        return network;
+    }
+
+    /** Tram lines along every {@code tramEvery}-th row of a grid created with the same size. */
+    static Network tramNetwork(int size, int tramEvery) {
+        Network base = grid(size);
+        Network tram = NetworkUtils.createNetwork();
+        NetworkFactory factory = tram.getFactory();
+        long dedicatedOsmId = 10_000_000L;
+        for (int row = 0; row < size; row += tramEvery) {
+            for (int col = 0; col < size; col++) {
+                Node node = base.getNodes().get(nodeId(row, col));
+                tram.addNode(factory.createNode(node.getId(), node.getCoord()));
+            }
+            for (int col = 0; col + 1 < size; col++) {
+                Link street = base.getLinks().get(linkId(row, col, row, col + 1));
+                long osmId = col < size / 2 ? OsmIdLinkIndex.osmId(street) : dedicatedOsmId++;
+                addTwoWay(tram, row, col, row, col + 1, osmId, Set.of("tram"), "tram");
+            }
+        }
+        return tram;
+    }
+
+    static TransitSchedule tramSchedule(Network network, int size, int tramEvery) {
+        TransitScheduleFactory factory = new TransitScheduleFactoryImpl();
+        TransitSchedule schedule = factory.createTransitSchedule();
+        for (int row = 0; row < size; row += tramEvery) {
+            List<Id<Link>> linkIds = new ArrayList<>();
+            List<TransitRouteStop> stops = new ArrayList<>();
+            for (int col = 0; col + 1 < size; col++) {
+                Id<Link> linkId = linkId(row, col, row, col + 1);
+                linkIds.add(linkId);
+                if (col % 4 == 0 || col + 2 == size) {
+                    Link link = network.getLinks().get(linkId);
+                    TransitStopFacility stop = factory.createTransitStopFacility(
+                            Id.create("stop_" + linkId, TransitStopFacility.class), link.getToNode().getCoord(), false);
+                    stop.setLinkId(linkId);
+                    schedule.addStopFacility(stop);
+                    double offset = col * 20.0;
+                    stops.add(factory.createTransitRouteStop(stop, offset, offset + 20.0));
+                }
+            }
+            NetworkRoute networkRoute = RouteUtils.createLinkNetworkRouteImpl(
+                    linkIds.get(0), linkIds.subList(1, linkIds.size() - 1), linkIds.get(linkIds.size() - 1));
+            TransitRoute route = factory.createTransitRoute(Id.create("row_" + row, TransitRoute.class), networkRoute, stops, "tram");
+            for (int departure = 0; departure < 24 * 6; departure++) {
+                route.addDeparture(factory.createDeparture(Id.create("dep_" + departure, Departure.class),
+                        5 * 3600 + departure * 600.0));
+            }
+            TransitLine line = factory.createTransitLine(Id.create("tram_" + row, TransitLine.class));
+            line.addRoute(route);
+            schedule.addTransitLine(line);
+        }
+        return schedule;
+    }
+
+    static Id<Node> nodeId(int row, int col) {
+        return Id.createNodeId(row + "_" + col);
+    }
+
+    static Id<Link> linkId(int fromRow, int fromCol, int toRow, int toCol) {
+        return Id.createLinkId(fromRow + "_" + fromCol + "-" + toRow + "_" + toCol);
+    }
+
+    private static void addTwoWay(Network network, int fromRow, int fromCol, int toRow, int toCol, long osmId,
+                                  Set<String> modes, String type) {
+        Node a = network.getNodes().get(nodeId(fromRow, fromCol));
+        Node b = network.getNodes().get(nodeId(toRow, toCol));
+        addLink(network, linkId(fromRow, fromCol, toRow, toCol), a, b, osmId, modes, type);
+        addLink(network, linkId(toRow, toCol, fromRow, fromCol), b, a, osmId, modes, type);
+    }
+
+    private static void addLink(Network network, Id<Link> id, Node from, Node to, long osmId, Set<String> modes, String type) {
+        Link link = network.getFactory().createLink(id, from, to);
+        link.setLength(SPACING);
+        link.setFreespeed(13.89);
+        link.setCapacity(600);
+        link.setNumberOfLanes(1);
+        link.setAllowedModes(modes);
+        link.getAttributes().putAttribute(OsmIdLinkIndex.OSM_ID, osmId);
+        link.getAttributes().putAttribute("type", type);
+        network.addLink(link);
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.pt;
+
+import ch.sbb.matsim.config.SwissRailRaptorConfigGroup;
+import ch.sbb.matsim.config.SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-person initial search radius for intermodal access/egress.
+ *
+ * With one parameter set per access mode, SwissRailRaptor's stop finder starts every search at the same radius: in
+ * the city centre that radius holds dozens of stops, each of which gets an access route, while in the outskirts it
+ * holds none and the search has to be extended. Here every person is assigned the smallest radius class that
+ * already contains enough stops around all of the person's activities (looked up in a {@link TransitStopGridIndex}),
+ * and there is one parameter set per class, selected through the raptor's person filter attribute.
+ *
+ * Opt-in (-DaccessRadiusClasses=true), it changes routing results. Every person must be assigned a class with
+ * {@link #assign} before routing: the parameter sets filter on the attribute, a person without it gets no
+ * intermodal access/egress at all.
+ */
+public final class AccessRadiusClasses {
+
+    public static final String ATTRIBUTE = "accessRadiusClass";
+    public static final double[] DEFAULT_RADII = {250, 500, 1000, 2000, 5000};
+
+    private AccessRadiusClasses() {
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("accessRadiusClasses", "false"));
+    }
+
+    public static String className(double radius) {
+        return "r" + Math.round(radius);
+    }
+
+    /** Adds one access/egress parameter set for the mode per radius class. */
+    public static void addParameterSets(SwissRailRaptorConfigGroup config, String mode, double[] radii, double maxRadius) {
+        for (double radius : radii) {
+            IntermodalAccessEgressParameterSet set = new IntermodalAccessEgressParameterSet();
+            set.setMode(mode);
+            set.setInitialSearchRadius(radius);
+            set.setMaxRadius(Math.max(radius, maxRadius));
+            set.setPersonFilterAttribute(ATTRIBUTE);
+            set.setPersonFilterValue(className(radius));
+            config.addIntermodalAccessEgress(set);
+        }
+    }
+
+    /**
+     * Assigns every person the smallest radius with at least {@code minStops} indexed stops around each activity of
+     * the selected plan (the largest radius if none qualifies). Persons are processed in parallel.
+     *
+     * @return number of persons per class
+     */
+    public static Map<String, Integer> assign(Population population, TransitStopGridIndex index, double[] radii, int minStops) {
+        Map<String, Integer> counts = new ConcurrentHashMap<>();
+        population.getPersons().values().parallelStream().forEach(person -> {
+            String name = className(radius(person, index, radii, minStops));
+            person.getAttributes().putAttribute(ATTRIBUTE, name);
+            counts.merge(name, 1, Integer::sum);
+        });
+        return new TreeMap<>(counts);
+    }
+
+    private static double radius(Person person, TransitStopGridIndex index, double[] radii, int minStops) {
+        Plan plan = person.getSelectedPlan();
+        int required = 0;
+        if (plan != null) {
+            for (PlanElement element : plan.getPlanElements()) {
+                if (element instanceof Activity activity && activity.getCoord() != null) {
+                    required = Math.max(required, radiusClass(activity.getCoord(), index, radii, minStops, required));
+                    if (required == radii.length - 1) {
+                        break;
+                    }
+                }
+            }
+        }
+        return radii[required];
+    }
+
+    // smallest class ≥ from with enough stops
+    private static int radiusClass(Coord coord, TransitStopGridIndex index, double[] radii, int minStops, int from) {
+        for (int c = from; c < radii.length; c++) {
+            if (index.countStops(coord, radii[c], minStops) >= minStops) {
+                return c;
+            }
+        }
+        return radii.length - 1;
+    }
+}
@@ -0,0 +1,88 @@
+package org.example.pt;
+
+import com.google.inject.Inject;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+
+/**
+ * Writes the events of every {@code interval}-th iteration (and of the last one) as binary events file
+ * {@code ITERS/it.N/N.events.bin}. Meant to replace the XML events output, so set the controller's write events
+ * interval to 0 when installing it.
+ *
+ * The writer is closed when the iteration ends, not after the mobsim: MATSim's EventsHandling drains the (parallel)
+ * events manager with finishProcessing in its own AfterMobsim listener, in no defined order relative to other
+ * AfterMobsim listeners, so events still queued at that point would be lost.
+ */
+public final class BinaryEventsModule extends AbstractModule {
+
+    public static final String FILE = "events.bin";
+
+    private final int interval;
+
+    public BinaryEventsModule(int interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public void install() {
+        addControlerListenerBinding().toInstance(new Output(interval));
+    }
+
+    private static final class Output implements BeforeMobsimListener, IterationEndsListener, ShutdownListener {
+
+        private final int interval;
+
+        @Inject
+        private EventsManager events;
+
+        @Inject
+        private OutputDirectoryHierarchy outputDirectory;
+
+        @Inject
+        private Config config;
+
+        private BinaryEventsWriter writer;
+
+        Output(int interval) {
+            this.interval = interval;
+        }
+
+        @Override
+        public void notifyBeforeMobsim(BeforeMobsimEvent e) {
+            int iteration = e.getIteration();
+            boolean write = interval > 0 && iteration % interval == 0
+                    || iteration == config.controller().getLastIteration();
+            if (write) {
+                writer = new BinaryEventsWriter(outputDirectory.getIterationFilename(iteration, FILE));
+                events.addHandler(writer);
+            }
+        }
+
+        @Override
+        public void notifyIterationEnds(IterationEndsEvent e) {
+            close();
+        }
+
+        // iteration aborted
+        @Override
+        public void notifyShutdown(ShutdownEvent e) {
+            close();
+        }
+
+        private void close() {
+            if (writer != null) {
+                events.removeHandler(writer);
+                writer.closeFile();
+                writer = null;
+            }
+        }
+    }
+}
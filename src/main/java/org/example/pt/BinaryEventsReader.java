@@ -0,0 +1,136 @@
+package org.example.pt;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsReaderXMLv1;
+import org.xml.sax.helpers.AttributesImpl;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.example.pt.BinaryEventsWriter.ABSENT;
+import static org.example.pt.BinaryEventsWriter.END_OF_FILE;
+import static org.example.pt.BinaryEventsWriter.FACILITY;
+import static org.example.pt.BinaryEventsWriter.LINK;
+import static org.example.pt.BinaryEventsWriter.MAGIC;
+import static org.example.pt.BinaryEventsWriter.PERSON;
+import static org.example.pt.BinaryEventsWriter.TIME;
+import static org.example.pt.BinaryEventsWriter.TYPE;
+import static org.example.pt.BinaryEventsWriter.VEHICLE;
+import static org.example.pt.BinaryEventsWriter.VERSION;
+
+/**
+ * Reads files written by {@link BinaryEventsWriter} and passes the events to an {@link EventsManager}.
+ *
+ * The columns of each chunk are turned back into the attributes of the XML format and handed to MATSim's XML events
+ * reader, so events arrive with their usual typed classes (LinkEnterEvent, PersonDepartureEvent, ...).
+ */
+public final class BinaryEventsReader {
+
+    private final EventsReaderXMLv1 delegate;
+
+    public BinaryEventsReader(EventsManager events) {
+        this.delegate = new EventsReaderXMLv1(events);
+    }
+
+    public void readFile(String file) {
+        List<String> strings = new ArrayList<>();
+        Inflater inflater = new Inflater();
+        AttributesImpl attributes = new AttributesImpl();
+        Stack<String> context = new Stack<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(file)), 1 << 16))) {
+            if (in.readLong() != MAGIC) {
+                throw new IOException("not a binary events file");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported version " + version);
+            }
+            while (true) {
+                int compressedLength = in.readInt();
+                if (compressedLength == END_OF_FILE) {
+                    break;
+                }
+                byte[] compressed = in.readNBytes(compressedLength);
+                byte[] raw = new byte[in.readInt()];
+                inflater.reset();
+                inflater.setInput(compressed);
+                if (inflater.inflate(raw) != raw.length) {
+                    throw new IOException("truncated chunk");
+                }
+                readChunk(ByteBuffer.wrap(raw), strings, attributes, context);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read binary events file " + file, e);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt chunk in binary events file " + file, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private void readChunk(ByteBuffer in, List<String> strings, AttributesImpl attributes, Stack<String> context) {
+        int newStrings = in.getInt();
+        for (int i = 0; i < newStrings; i++) {
+            byte[] bytes = new byte[in.getInt()];
+            in.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        int n = in.getInt();
+        int[] type = readInts(in, n);
+        double[] time = new double[n];
+        in.asDoubleBuffer().get(time);
+        in.position(in.position() + 8 * n);
+        int[] person = readInts(in, n);
+        int[] vehicle = readInts(in, n);
+        int[] link = readInts(in, n);
+        int[] facility = readInts(in, n);
+        int[] extraCount = readInts(in, n);
+        int extras = in.getInt();
+        int[] extraKeys = readInts(in, extras);
+        int[] extraValues = readInts(in, extras);
+
+        int extra = 0;
+        for (int i = 0; i < n; i++) {
+            attributes.clear();
+            add(attributes, TIME, Double.toString(time[i]));
+            add(attributes, TYPE, strings.get(type[i]));
+            addIfPresent(attributes, PERSON, person[i], strings);
+            addIfPresent(attributes, VEHICLE, vehicle[i], strings);
+            addIfPresent(attributes, LINK, link[i], strings);
+            addIfPresent(attributes, FACILITY, facility[i], strings);
+            for (int e = 0; e < extraCount[i]; e++, extra++) {
+                add(attributes, strings.get(extraKeys[extra]), strings.get(extraValues[extra]));
+            }
+            delegate.startTag("event", attributes, context);
+        }
+    }
+
+    private static void addIfPresent(AttributesImpl attributes, String key, int value, List<String> strings) {
+        if (value != ABSENT) {
+            add(attributes, key, strings.get(value));
+        }
+    }
+
+    private static void add(AttributesImpl attributes, String key, String value) {
+        attributes.addAttribute("", key, key, "CDATA", value);
+    }
+
+    private static int[] readInts(ByteBuffer in, int n) {
+        int[] values = new int[n];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * n);
+        return values;
+    }
+}
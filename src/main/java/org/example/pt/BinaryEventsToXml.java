@@ -0,0 +1,30 @@
+package org.example.pt;
+
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.algorithms.EventWriterXML;
+
+/**
+ * Converts a binary events file ({@link BinaryEventsWriter}) to a standard MATSim XML events file,
+ * e.g. for tools that only read XML.
+ */
+public class BinaryEventsToXml {
+
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.out.println("Usage: java BinaryEventsToXml <events.bin> <output_events.xml.gz>");
+            return;
+        }
+        convert(args[0], args[1]);
+    }
+
+    public static void convert(String binaryFile, String xmlFile) {
+        EventsManager events = EventsUtils.createEventsManager();
+        EventWriterXML writer = new EventWriterXML(xmlFile);
+        events.addHandler(writer);
+        events.initProcessing();
+        new BinaryEventsReader(events).readFile(binaryFile);
+        events.finishProcessing();
+        writer.closeFile();
+    }
+}
@@ -0,0 +1,269 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.algorithms.EventWriter;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Writes events to a compact binary, columnar file (read with {@link BinaryEventsReader}).
+ *
+ * Events are collected in batches of {@link #BATCH_SIZE} and handed to a background thread through a bounded queue
+ * (at most {@link #QUEUE_BATCHES} batches in flight, the events thread blocks when the writer falls behind). The
+ * background thread encodes each batch as one chunk and deflates it.
+ *
+ * File layout: magic, version, then chunks of [compressed length, uncompressed length, deflated payload], closed
+ * by a chunk length of -1. A payload holds the strings first seen in this chunk (appended to the file-wide string
+ * table), the event count and the columns type, time, person, vehicle, link, facility (string table indices, -1 if
+ * absent), followed by the remaining attributes of every event as key/value index pairs.
+ *
+ * Like MATSim's XML event writer, this handler expects to be called from a single thread.
+ */
+public final class BinaryEventsWriter implements EventWriter, BasicEventHandler {
+
+    static final long MAGIC = 0x4D415453494D4556L; // "MATSIMEV"
+    static final int VERSION = 1;
+    static final int END_OF_FILE = -1;
+    static final int ABSENT = -1;
+
+    static final String TYPE = "type";
+    static final String TIME = "time";
+    static final String PERSON = "person";
+    static final String VEHICLE = "vehicle";
+    static final String LINK = "link";
+    static final String FACILITY = "facility";
+
+    public static final int BATCH_SIZE = 8192;
+    public static final int QUEUE_BATCHES = 16;
+
+    private record Batch(Event[] events, int size) {
+    }
+
+    private static final Batch POISON = new Batch(new Event[0], 0);
+
+    private final String file;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_BATCHES);
+    private final Thread thread;
+    private volatile Throwable failure;
+
+    private Event[] current = new Event[BATCH_SIZE];
+    private int currentSize;
+
+    public BinaryEventsWriter(String file) {
+        this(file, Deflater.BEST_SPEED);
+    }
+
+    /** @param compressionLevel deflate level, 1 (fast) to 9 (small) */
+    public BinaryEventsWriter(String file, int compressionLevel) {
+        this.file = file;
+        OutputStream out;
+        try {
+            out = new BufferedOutputStream(Files.newOutputStream(Path.of(file)), 1 << 16);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + file, e);
+        }
+        this.thread = new Thread(() -> writeLoop(out, compressionLevel), "binary-events-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    @Override
+    public void handleEvent(Event event) {
+        current[currentSize++] = event;
+        if (currentSize == BATCH_SIZE) {
+            enqueue(new Batch(current, currentSize));
+            current = new Event[BATCH_SIZE];
+            currentSize = 0;
+        }
+    }
+
+    @Override
+    public void reset(int iteration) {
+    }
+
+    /** Writes the remaining events and waits for the background thread to finish the file. */
+    @Override
+    public void closeFile() {
+        if (currentSize > 0) {
+            enqueue(new Batch(current, currentSize));
+            currentSize = 0;
+        }
+        enqueue(POISON);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while closing " + file, e);
+        }
+        if (failure != null) {
+            throw new RuntimeException("Could not write events to " + file, failure);
+        }
+    }
+
+    private void enqueue(Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing events to " + file, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- background thread
+
+    private void writeLoop(OutputStream stream, int compressionLevel) {
+        Object2IntOpenHashMap<String> strings = new Object2IntOpenHashMap<>();
+        strings.defaultReturnValue(-1);
+        Deflater deflater = new Deflater(compressionLevel);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(1 << 20);
+        byte[] compressed = new byte[1 << 16];
+
+        try (DataOutputStream out = new DataOutputStream(stream)) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            while (true) {
+                Batch batch = queue.take();
+                if (batch == POISON) {
+                    break;
+                }
+                payload.reset();
+                encode(batch, strings, new DataOutputStream(payload));
+
+                byte[] raw = payload.toByteArray();
+                ByteArrayOutputStream chunk = new ByteArrayOutputStream(raw.length / 4 + 64);
+                deflater.reset();
+                deflater.setInput(raw);
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(compressed);
+                    chunk.write(compressed, 0, n);
+                }
+                out.writeInt(chunk.size());
+                out.writeInt(raw.length);
+                chunk.writeTo(out);
+            }
+            out.writeInt(END_OF_FILE);
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+            drainAfterFailure(); // so the events thread does not block forever on a full queue
+        } catch (InterruptedException e) {
+            failure = e;
+            Thread.currentThread().interrupt();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void drainAfterFailure() {
+        try {
+            while (queue.take() != POISON) {
+                // discard
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void encode(Batch batch, Object2IntOpenHashMap<String> strings, DataOutputStream out) throws IOException {
+        int n = batch.size();
+        int[] type = new int[n];
+        double[] time = new double[n];
+        int[] person = new int[n];
+        int[] vehicle = new int[n];
+        int[] link = new int[n];
+        int[] facility = new int[n];
+        int[] extraCount = new int[n];
+        List<String> newStrings = new ArrayList<>();
+        int[] extraKeys = new int[n * 2];
+        int[] extraValues = new int[n * 2];
+        int extras = 0;
+
+        for (int i = 0; i < n; i++) {
+            Event event = batch.events()[i];
+            type[i] = intern(event.getEventType(), strings, newStrings);
+            time[i] = event.getTime();
+            person[i] = ABSENT;
+            vehicle[i] = ABSENT;
+            link[i] = ABSENT;
+            facility[i] = ABSENT;
+            for (Map.Entry<String, String> attribute : event.getAttributes().entrySet()) {
+                String key = attribute.getKey();
+                String value = attribute.getValue();
+                if (value == null || key.equals(TYPE) || key.equals(TIME)) {
+                    continue;
+                }
+                int index = intern(value, strings, newStrings);
+                switch (key) {
+                    case PERSON -> person[i] = index;
+                    case VEHICLE -> vehicle[i] = index;
+                    case LINK -> link[i] = index;
+                    case FACILITY -> facility[i] = index;
+                    default -> {
+                        if (extras == extraKeys.length) {
+                            extraKeys = Arrays.copyOf(extraKeys, extras * 2);
+                            extraValues = Arrays.copyOf(extraValues, extras * 2);
+                        }
+                        extraKeys[extras] = intern(key, strings, newStrings);
+                        extraValues[extras] = index;
+                        extras++;
+                        extraCount[i]++;
+                    }
+                }
+            }
+        }
+
+        out.writeInt(newStrings.size());
+        for (String s : newStrings) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(n);
+        writeInts(out, type, n);
+        for (int i = 0; i < n; i++) {
+            out.writeDouble(time[i]);
+        }
+        writeInts(out, person, n);
+        writeInts(out, vehicle, n);
+        writeInts(out, link, n);
+        writeInts(out, facility, n);
+        writeInts(out, extraCount, n);
+        out.writeInt(extras);
+        writeInts(out, extraKeys, extras);
+        writeInts(out, extraValues, extras);
+        out.flush();
+    }
+
+    private static int intern(String s, Object2IntOpenHashMap<String> strings, List<String> newStrings) {
+        int index = strings.getInt(s);
+        if (index < 0) {
+            index = strings.size();
+            strings.put(s, index);
+            newStrings.add(s);
+        }
+        return index;
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values, int n) throws IOException {
+        for (int i = 0; i < n; i++) {
+            out.writeInt(values[i]);
+        }
+    }
+}
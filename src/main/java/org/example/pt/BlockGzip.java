@@ -0,0 +1,156 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.utils.io.IOUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Block gzip (BGZF) for the .xml.gz files of this project.
+ *
+ * Writers stream into {@link #openOutputStream}, which compresses blocks on all cores while they are written:
+ * {@link #write} hands the stream to MATSim's network and population writers, the writers of this project open it
+ * directly. Only MATSim's transit schedule writer takes nothing but a file name; {@link #writeViaFile} lets it write
+ * plain XML to a temporary file next to the target and compresses that. Readers get a {@link BlockGzipInputStream},
+ * which decompresses BGZF in parallel and reads ordinary gzip files as before.
+ *
+ * All streams share one pool ({@link #pool}); its workers exit when idle and end their Deflater/Inflater.
+ *
+ * Disable with -DblockGzip=false (single-stream gzip as written by MATSim).
+ */
+public final class BlockGzip {
+
+    private static final ThreadPoolExecutor POOL = createPool();
+
+    private BlockGzip() {
+    }
+
+    /** The pool compressing and decompressing the blocks of all block gzip streams. */
+    static ExecutorService pool() {
+        return POOL;
+    }
+
+    // one thread per core, idle workers exit after a minute and free the native zlib memory they hold
+    private static ThreadPoolExecutor createPool() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(() -> {
+                try {
+                    r.run();
+                } finally {
+                    BlockGzipOutputStream.endDeflater();
+                    BlockGzipInputStream.endInflater();
+                }
+            }, "bgzf");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("blockGzip", "true"));
+    }
+
+    /**
+     * Opens the file for writing; .gz files are block-compressed while they are written (single-stream gzip if
+     * disabled).
+     */
+    public static OutputStream openOutputStream(String file) {
+        if (!isEnabled() || !file.endsWith(".gz")) {
+            return IOUtils.getOutputStream(IOUtils.getFileUrl(file), false);
+        }
+        try {
+            return new BlockGzipOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(file)), 1 << 16));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + file, e);
+        }
+    }
+
+    /**
+     * Writes the file through a writer's OutputStream entry point, e.g. {@code out -> new NetworkWriter(network).write(out)};
+     * .gz files are block-compressed while they are written. The stream is closed afterwards if the writer did not.
+     */
+    public static void write(String file, Consumer<OutputStream> writer) {
+        try (OutputStream out = openOutputStream(file)) {
+            writer.accept(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+    }
+
+    /**
+     * For writers that only take a file name (MATSim's TransitScheduleWriter): for .gz files the writer gets a
+     * temporary uncompressed file, which is then block-compressed to {@code file}. Needs disk space for the plain
+     * file; writers with an OutputStream entry point use {@link #write} instead.
+     */
+    public static void writeViaFile(String file, Consumer<String> writer) {
+        if (!isEnabled() || !file.endsWith(".gz")) {
+            writer.accept(file);
+            return;
+        }
+        Path plain = Path.of(file.substring(0, file.length() - 3) + ".tmp");
+        try {
+            writer.accept(plain.toString());
+            compress(plain, Path.of(file));
+        } finally {
+            try {
+                Files.deleteIfExists(plain);
+            } catch (IOException e) {
+                System.err.println("Could not delete " + plain + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static void compress(Path plain, Path target) {
+        try (InputStream in = Files.newInputStream(plain);
+             OutputStream out = new BlockGzipOutputStream(new BufferedOutputStream(Files.newOutputStream(target), 1 << 16))) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compress " + plain + " to " + target, e);
+        }
+    }
+
+    /** Opens a local file, .gz files are decompressed (in parallel if they are BGZF). */
+    public static InputStream open(String file) {
+        try {
+            if (file.endsWith(".gz")) {
+                return new BlockGzipInputStream(Files.newInputStream(Path.of(file)));
+            }
+            return IOUtils.getInputStream(IOUtils.getFileUrl(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open " + file, e);
+        }
+    }
+
+    public static void readNetwork(String file, Network target) {
+        try (InputStream in = open(file)) {
+            new MatsimNetworkReader(target).parse(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+    }
+
+    public static void readPopulation(String file, Scenario scenario) {
+        try (InputStream in = open(file)) {
+            new PopulationReader(scenario).parse(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + file, e);
+        }
+    }
+}
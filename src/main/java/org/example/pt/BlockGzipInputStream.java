@@ -0,0 +1,203 @@
+package org.example.pt;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+import static org.example.pt.BlockGzipOutputStream.FOOTER_SIZE;
+import static org.example.pt.BlockGzipOutputStream.HEADER_SIZE;
+
+/**
+ * Reads gzip files, decompressing block gzip (BGZF, see {@link BlockGzipOutputStream}) blocks in parallel: the
+ * compressed blocks are read ahead sequentially, inflated on the pool shared by all block gzip streams
+ * ({@link BlockGzip#pool}) and returned in order.
+ *
+ * Files that are not BGZF (ordinary single-stream gzip) are read with a plain {@link GZIPInputStream}.
+ */
+public final class BlockGzipInputStream extends InputStream {
+
+    // one per pool worker, ended when the worker exits
+    private static final ThreadLocal<Inflater> INFLATERS = new ThreadLocal<>();
+
+    private final InputStream in;
+    private final InputStream fallback;
+    private final int maxInFlight;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] current = new byte[0];
+    private int position;
+    private boolean endOfInput;
+
+    public BlockGzipInputStream(InputStream in) throws IOException {
+        this(in, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** @param threads blocks of this stream decompressed at a time (4 times as many are read ahead) */
+    public BlockGzipInputStream(InputStream in, int threads) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 1 << 16);
+        buffered.mark(HEADER_SIZE);
+        byte[] header = buffered.readNBytes(HEADER_SIZE);
+        buffered.reset();
+
+        if (header.length == HEADER_SIZE && isBlockHeader(header)) {
+            this.in = buffered;
+            this.fallback = null;
+            this.maxInFlight = 4 * Math.max(1, threads);
+        } else {
+            this.in = buffered;
+            this.fallback = new GZIPInputStream(buffered, 1 << 16);
+            this.maxInFlight = 0;
+        }
+    }
+
+    /** True if the stream is BGZF and read in parallel. */
+    public boolean isBlockGzip() {
+        return fallback == null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (fallback != null) {
+            return fallback.read();
+        }
+        if (position == current.length && !nextBlock()) {
+            return -1;
+        }
+        return current[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (fallback != null) {
+            return fallback.read(b, off, len);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position == current.length && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - position);
+        System.arraycopy(current, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pending.forEach(future -> future.cancel(false));
+        pending.clear();
+        if (fallback != null) {
+            fallback.close();
+        } else {
+            in.close();
+        }
+    }
+
+    // moves to the next non-empty block, false at the end of the file
+    private boolean nextBlock() throws IOException {
+        while (true) {
+            while (!endOfInput && pending.size() < maxInFlight) {
+                byte[] block = readBlock();
+                if (block == null) {
+                    endOfInput = true;
+                } else {
+                    pending.add(BlockGzip.pool().submit(() -> inflate(block)));
+                }
+            }
+            if (pending.isEmpty()) {
+                return false;
+            }
+            try {
+                current = pending.poll().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while decompressing");
+            } catch (ExecutionException e) {
+                throw new IOException("Could not decompress block", e.getCause());
+            }
+            position = 0;
+            if (current.length > 0) {
+                return true;
+            }
+        }
+    }
+
+    // the complete next block, or null at the end of the file
+    private byte[] readBlock() throws IOException {
+        byte[] header = in.readNBytes(HEADER_SIZE);
+        if (header.length == 0) {
+            return null;
+        }
+        if (header.length < HEADER_SIZE || !isBlockHeader(header)) {
+            throw new IOException("Not a BGZF block: mixed or truncated block gzip file");
+        }
+        int blockSize = ((header[16] & 0xff) | (header[17] & 0xff) << 8) + 1;
+        byte[] block = new byte[blockSize];
+        System.arraycopy(header, 0, block, 0, HEADER_SIZE);
+        if (in.readNBytes(block, HEADER_SIZE, blockSize - HEADER_SIZE) != blockSize - HEADER_SIZE) {
+            throw new IOException("Truncated BGZF block");
+        }
+        return block;
+    }
+
+    private static byte[] inflate(byte[] block) throws IOException, DataFormatException {
+        int compressedSize = block.length - HEADER_SIZE - FOOTER_SIZE;
+        int crc = getInt(block, block.length - 8);
+        int size = getInt(block, block.length - 4);
+
+        Inflater inflater = INFLATERS.get();
+        if (inflater == null) {
+            inflater = new Inflater(true);
+            INFLATERS.set(inflater);
+        }
+        inflater.reset();
+        inflater.setInput(block, HEADER_SIZE, compressedSize);
+        byte[] data = new byte[size];
+        int n = 0;
+        while (n < size && !inflater.finished()) {
+            int read = inflater.inflate(data, n, size - n);
+            if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                break;
+            }
+            n += read;
+        }
+        if (n != size) {
+            throw new IOException("BGZF block decompressed to " + n + " instead of " + size + " bytes");
+        }
+        CRC32 check = new CRC32();
+        check.update(data);
+        if ((int) check.getValue() != crc) {
+            throw new IOException("BGZF block CRC mismatch");
+        }
+        return data;
+    }
+
+    /** Frees the native memory of the calling thread's Inflater, if it has one. */
+    static void endInflater() {
+        Inflater inflater = INFLATERS.get();
+        if (inflater != null) {
+            inflater.end();
+            INFLATERS.remove();
+        }
+    }
+
+    // gzip magic, deflate, FEXTRA, XLEN = 6 with a "BC" subfield of length 2
+    static boolean isBlockHeader(byte[] h) {
+        return (h[0] & 0xff) == 0x1f && (h[1] & 0xff) == 0x8b && h[2] == 8 && (h[3] & 4) != 0
+                && h[10] == 6 && h[11] == 0 && h[12] == 'B' && h[13] == 'C' && h[14] == 2 && h[15] == 0;
+    }
+
+    private static int getInt(byte[] b, int pos) {
+        return (b[pos] & 0xff) | (b[pos + 1] & 0xff) << 8 | (b[pos + 2] & 0xff) << 16 | (b[pos + 3] & 0xff) << 24;
+    }
+}
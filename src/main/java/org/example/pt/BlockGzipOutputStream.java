@@ -0,0 +1,191 @@
+package org.example.pt;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes block gzip (BGZF): the data is cut into blocks of at most 65280 bytes, and every block becomes an
+ * independent gzip member carrying its compressed size in a "BC" extra field. Blocks are compressed on the pool shared
+ * by all block gzip streams ({@link BlockGzip#pool}) and written in order; the file ends with the standard empty BGZF
+ * block.
+ *
+ * Any gzip reader can read the result, since gzip allows concatenated members. {@link BlockGzipInputStream} uses
+ * the block sizes to decompress blocks in parallel.
+ */
+public final class BlockGzipOutputStream extends OutputStream {
+
+    static final int MAX_INPUT = 0xff00;
+    static final int MAX_BLOCK = 0x10000;
+    static final int HEADER_SIZE = 18;
+    static final int FOOTER_SIZE = 8;
+
+    static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 0x08, 0x04, 0x00, 0x00, 0x00, 0x00, 0x00, (byte) 0xff, 0x06, 0x00, 0x42, 0x43, 0x02, 0x00,
+            0x1b, 0x00, 0x03, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+
+    // one per pool worker, ended when the worker exits
+    private static final ThreadLocal<Deflater> DEFLATERS = new ThreadLocal<>();
+
+    private final OutputStream out;
+    private final int level;
+    private final int maxInFlight;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] buffer = new byte[MAX_INPUT];
+    private int size;
+    private boolean closed;
+
+    public BlockGzipOutputStream(OutputStream out) {
+        this(out, Deflater.DEFAULT_COMPRESSION, Runtime.getRuntime().availableProcessors());
+    }
+
+    /** @param threads blocks of this stream compressed at a time (4 times as many are buffered) */
+    public BlockGzipOutputStream(OutputStream out, int level, int threads) {
+        this.out = out;
+        this.level = level;
+        this.maxInFlight = 4 * Math.max(1, threads);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        buffer[size++] = (byte) b;
+        if (size == MAX_INPUT) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = Math.min(len, MAX_INPUT - size);
+            System.arraycopy(b, off, buffer, size, n);
+            size += n;
+            off += n;
+            len -= n;
+            if (size == MAX_INPUT) {
+                submitBlock();
+            }
+        }
+    }
+
+    /** Ends the current block and writes all pending blocks. */
+    @Override
+    public void flush() throws IOException {
+        if (size > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flush();
+            out.write(EOF_BLOCK);
+        } finally {
+            pending.forEach(future -> future.cancel(false));
+            pending.clear();
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        if (pending.size() >= maxInFlight) {
+            writeNext();
+        }
+        byte[] data = buffer;
+        int length = size;
+        pending.add(BlockGzip.pool().submit(() -> compress(data, length, level)));
+        buffer = new byte[MAX_INPUT];
+        size = 0;
+    }
+
+    private void writeNext() throws IOException {
+        try {
+            out.write(pending.poll().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("Could not compress block", e.getCause());
+        }
+    }
+
+    static byte[] compress(byte[] data, int length, int level) {
+        Deflater deflater = DEFLATERS.get();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            DEFLATERS.set(deflater);
+        }
+        byte[] compressed = deflate(deflater, data, length, level);
+        if (compressed == null) {
+            // incompressible data: stored blocks are guaranteed to fit
+            compressed = deflate(deflater, data, length, Deflater.NO_COMPRESSION);
+        }
+        int compressedSize = compressed.length;
+        int blockSize = HEADER_SIZE + compressedSize + FOOTER_SIZE;
+
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+
+        byte[] block = new byte[blockSize];
+        System.arraycopy(EOF_BLOCK, 0, block, 0, 16); // gzip header with FEXTRA, XLEN = 6, "BC", SLEN = 2
+        putShort(block, 16, blockSize - 1);
+        System.arraycopy(compressed, 0, block, HEADER_SIZE, compressedSize);
+        putInt(block, HEADER_SIZE + compressedSize, (int) crc.getValue());
+        putInt(block, HEADER_SIZE + compressedSize + 4, length);
+        return block;
+    }
+
+    /** Frees the native memory of the calling thread's Deflater, if it has one. */
+    static void endDeflater() {
+        Deflater deflater = DEFLATERS.get();
+        if (deflater != null) {
+            deflater.end();
+            DEFLATERS.remove();
+        }
+    }
+
+    // returns null if the compressed data does not fit into one block
+    private static byte[] deflate(Deflater deflater, byte[] data, int length, int level) {
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data, 0, length);
+        deflater.finish();
+        byte[] out = new byte[MAX_BLOCK - HEADER_SIZE - FOOTER_SIZE];
+        int n = 0;
+        while (!deflater.finished()) {
+            if (n == out.length) {
+                return null;
+            }
+            n += deflater.deflate(out, n, out.length - n);
+        }
+        byte[] result = new byte[n];
+        System.arraycopy(out, 0, result, 0, n);
+        return result;
+    }
+
+    private static void putShort(byte[] b, int pos, int value) {
+        b[pos] = (byte) value;
+        b[pos + 1] = (byte) (value >>> 8);
+    }
+
+    private static void putInt(byte[] b, int pos, int value) {
+        putShort(b, pos, value);
+        putShort(b, pos + 2, value >>> 16);
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.pt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SHA-256 content hashes of input files, used to decide whether cached results derived from a file are still valid.
+ *
+ * A file is hashed at most once per run: the hash is remembered together with the file's {@link Stamp} and reused
+ * while size and modification time are unchanged. Caches compare stamps first and only hash when they differ.
+ */
+public final class ContentHash {
+
+    /** Size and modification time (ns) of a file, the cheap check before comparing content hashes. */
+    public record Stamp(long size, long modified) {
+
+        public static final Stamp NONE = new Stamp(-1, -1);
+
+        public static Stamp of(String file) {
+            try {
+                Path path = Path.of(file);
+                return new Stamp(Files.size(path), Files.getLastModifiedTime(path).to(TimeUnit.NANOSECONDS));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read " + file, e);
+            }
+        }
+    }
+
+    private record Hashed(Stamp stamp, String hash) {
+    }
+
+    private static final Map<Path, Hashed> HASHED = new ConcurrentHashMap<>();
+
+    private ContentHash() {
+    }
+
+    /** Hex encoded SHA-256 of the file content; reused within the run while the file's stamp is unchanged. */
+    public static String ofFile(String file) {
+        Stamp stamp = Stamp.of(file);
+        Path path = Path.of(file).toAbsolutePath().normalize();
+        // compute, so concurrent loaders asking for the same file wait for one hash instead of hashing it twice
+        return HASHED.compute(path, (p, hashed) -> hashed != null && hashed.stamp().equals(stamp)
+                ? hashed : new Hashed(stamp, hash(file))).hash();
+    }
+
+    private static String hash(String file) {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[1 << 20];
+        try (InputStream in = Files.newInputStream(Path.of(file))) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not hash " + file, e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /** Hex encoded SHA-256 over the given strings (e.g. file hashes and parameters). */
+    public static String of(String... parts) {
+        MessageDigest digest = sha256();
+        for (String part : parts) {
+            digest.update(part.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
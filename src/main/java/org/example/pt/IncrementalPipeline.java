@@ -0,0 +1,129 @@
+package org.example.pt;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A sequence of file-based steps that are only rerun when their inputs change.
+ *
+ * Every step declares its input files, output files and a parameter string (settings that are not part of an input
+ * file). The step key is a hash over the parameters and the content hashes of all inputs; it is recorded in a
+ * manifest once the step succeeded. On the next run the step is skipped if its key is unchanged and all outputs
+ * still exist. Since the outputs of a step are inputs of the steps after it, rerunning a step only invalidates the
+ * steps downstream whose inputs actually changed.
+ */
+public final class IncrementalPipeline {
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    private record Step(String name, List<String> inputs, List<String> outputs, String parameters, Action action,
+                        boolean alwaysRun) {
+    }
+
+    private final Path manifestFile;
+    private final Properties manifest = new Properties();
+    private final boolean force;
+    private final List<Step> steps = new ArrayList<>();
+
+    /**
+     * @param manifestFile properties file holding the key of every completed step
+     * @param force        rerun all steps regardless of the manifest
+     */
+    public IncrementalPipeline(String manifestFile, boolean force) {
+        this.manifestFile = Path.of(manifestFile);
+        this.force = force;
+        if (Files.isRegularFile(this.manifestFile)) {
+            try (InputStream in = Files.newInputStream(this.manifestFile)) {
+                manifest.load(in);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read pipeline manifest " + manifestFile, e);
+            }
+        }
+    }
+
+    public IncrementalPipeline step(String name, List<String> inputs, List<String> outputs, String parameters, Action action) {
+        steps.add(new Step(name, inputs, outputs, parameters, action, false));
+        return this;
+    }
+
+    /** A cheap step that runs every time, e.g. writing a config file that a later step hashes as input. */
+    public IncrementalPipeline alwaysStep(String name, Action action) {
+        steps.add(new Step(name, List.of(), List.of(), "", action, true));
+        return this;
+    }
+
+    public void run() {
+        for (Step step : steps) {
+            if (step.alwaysRun()) {
+                execute(step);
+                continue;
+            }
+
+            String key = key(step);
+            if (!force && key.equals(manifest.getProperty(step.name())) && outputsExist(step)) {
+                System.out.println("Pipeline: skipping '" + step.name() + "', inputs unchanged");
+                continue;
+            }
+
+            // forget the old key first, an interrupted step must not look complete on the next run
+            manifest.remove(step.name());
+            saveManifest();
+            execute(step);
+            manifest.setProperty(step.name(), key);
+            saveManifest();
+        }
+    }
+
+    private void execute(Step step) {
+        System.out.println("Pipeline: running '" + step.name() + "'");
+        long start = System.currentTimeMillis();
+        try {
+            step.action().run();
+        } catch (Exception e) {
+            throw new RuntimeException("Pipeline step '" + step.name() + "' failed", e);
+        }
+        System.out.println("Pipeline: '" + step.name() + "' finished in " + (System.currentTimeMillis() - start) / 1000 + " s");
+    }
+
+    private static String key(Step step) {
+        List<String> parts = new ArrayList<>();
+        parts.add(step.parameters());
+        for (String input : step.inputs()) {
+            parts.add(input);
+            parts.add(Files.isRegularFile(Path.of(input)) ? ContentHash.ofFile(input) : "missing");
+        }
+        return ContentHash.of(parts.toArray(new String[0]));
+    }
+
+    private static boolean outputsExist(Step step) {
+        for (String output : step.outputs()) {
+            if (!Files.exists(Path.of(output))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void saveManifest() {
+        try {
+            if (manifestFile.getParent() != null) {
+                Files.createDirectories(manifestFile.getParent());
+            }
+            try (OutputStream out = Files.newOutputStream(manifestFile)) {
+                manifest.store(out, "pipeline step keys");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write pipeline manifest " + manifestFile, e);
+        }
+    }
+}
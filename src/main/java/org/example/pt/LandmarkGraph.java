@@ -0,0 +1,392 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.example.pt.SnapshotColumns.readString;
+import static org.example.pt.SnapshotColumns.writeString;
+
+/**
+ * Packed (CSR) copy of a static network plus ALT landmark distances, the data behind {@link LandmarkRouter}.
+ *
+ * Nodes are ordered by id, so the node indices (and with that a persisted landmark file) do not depend on the order
+ * the network was loaded in. Out-links of node v are {@code outStart[v] .. outStart[v + 1]}, in-links are stored the
+ * same way in the reverse arrays.
+ *
+ * Landmark distances are shortest path lengths in metres, to and from every node, for a number of landmarks chosen
+ * as the outermost node in equal angular slices around the network centre. They are independent of the travel
+ * disutility, the router scales them to a cost bound. The distances are computed in parallel (two Dijkstra searches
+ * per landmark) and written to a file, which is reused as long as the fingerprint of the network structure
+ * (node ids, coordinates, link ends and lengths) matches.
+ */
+public final class LandmarkGraph {
+
+    private static final long MAGIC = 0x4D415453494D4C4DL; // "MATSIMLM"
+    private static final int VERSION = 1;
+
+    final Node[] nodes;
+    final Link[] links; // by out-edge
+    final int[] outStart;
+    final int[] outTo;
+    final double[] length; // by out-edge
+    final int[] inStart;
+    final int[] inFrom;
+    final int[] inEdge; // out-edge index of every in-edge
+    private final int[] indexById;
+
+    final int landmarks;
+    // distances of landmark l: [l * nodes + v]
+    float[] fromLandmark;
+    float[] toLandmark;
+
+    private LandmarkGraph(Network network, int landmarks) {
+        this.landmarks = landmarks;
+        this.nodes = network.getNodes().values().toArray(new Node[0]);
+        Arrays.sort(nodes, Comparator.comparing(node -> node.getId().toString()));
+        this.indexById = new int[Id.getNumberOfIds(Node.class)];
+        Arrays.fill(indexById, -1);
+        for (int i = 0; i < nodes.length; i++) {
+            indexById[nodes[i].getId().index()] = i;
+        }
+
+        int n = nodes.length;
+        List<Link> sorted = new ArrayList<>(network.getLinks().values());
+        sorted.sort(Comparator.<Link>comparingInt(link -> index(link.getFromNode()))
+                .thenComparing(link -> link.getId().toString()));
+        int m = sorted.size();
+        this.links = sorted.toArray(new Link[0]);
+        this.outStart = new int[n + 1];
+        this.outTo = new int[m];
+        this.length = new double[m];
+        this.inStart = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            outStart[index(links[e].getFromNode()) + 1]++;
+            inStart[index(links[e].getToNode()) + 1]++;
+            outTo[e] = index(links[e].getToNode());
+            length[e] = links[e].getLength();
+        }
+        for (int v = 0; v < n; v++) {
+            outStart[v + 1] += outStart[v];
+            inStart[v + 1] += inStart[v];
+        }
+        this.inFrom = new int[m];
+        this.inEdge = new int[m];
+        int[] fill = new int[n];
+        for (int e = 0; e < m; e++) {
+            int to = outTo[e];
+            int p = inStart[to] + fill[to]++;
+            inFrom[p] = index(links[e].getFromNode());
+            inEdge[p] = e;
+        }
+    }
+
+    /**
+     * Builds the packed graph for the network and loads its landmark distances from {@code file}, or computes them
+     * and writes the file if it is missing or was written for another network.
+     *
+     * @param file landmark file, null to always compute the distances
+     */
+    public static LandmarkGraph build(Network network, int landmarks, Path file) {
+        LandmarkGraph graph = new LandmarkGraph(network, landmarks);
+        String fingerprint = graph.fingerprint();
+        if (file != null && Files.isRegularFile(file)) {
+            try {
+                if (graph.load(file, fingerprint)) {
+                    System.out.println("Landmarks read from " + file);
+                    return graph;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable landmark file " + file + ": " + e.getMessage());
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        graph.computeLandmarks();
+        System.out.println("Computed " + landmarks + " landmarks for " + graph.nodes.length + " nodes in "
+                + (System.currentTimeMillis() - start) + " ms");
+        if (file != null) {
+            try {
+                graph.write(file, fingerprint);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Could not write landmark file " + file + ": " + e.getMessage());
+            }
+        }
+        return graph;
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    /** Index of the node in this graph, -1 if it is not part of it. */
+    public int index(Node node) {
+        int id = node.getId().index();
+        return id < indexById.length ? indexById[id] : -1;
+    }
+
+    /** Lower bound of the shortest path length from v to t in metres. */
+    double lowerBound(int v, int t) {
+        int n = nodes.length;
+        double bound = 0;
+        for (int l = 0; l < landmarks; l++) {
+            int base = l * n;
+            // triangle inequality: d(L,t) ≤ d(L,v) + d(v,t) and d(v,L) ≤ d(v,t) + d(t,L)
+            float lt = fromLandmark[base + t];
+            float lv = fromLandmark[base + v];
+            if (lt != Float.POSITIVE_INFINITY && lv != Float.POSITIVE_INFINITY) {
+                bound = Math.max(bound, lt - lv);
+            }
+            float vl = toLandmark[base + v];
+            float tl = toLandmark[base + t];
+            if (vl != Float.POSITIVE_INFINITY && tl != Float.POSITIVE_INFINITY) {
+                bound = Math.max(bound, vl - tl);
+            }
+        }
+        // the distances are stored as floats, keep the bound below the exact one
+        return Math.max(0, bound * (1 - 1e-6) - 0.1);
+    }
+
+    // ---------------------------------------------------------------- landmarks
+
+    private void computeLandmarks() {
+        int n = nodes.length;
+        int[] selected = selectLandmarks();
+        fromLandmark = new float[landmarks * n];
+        toLandmark = new float[landmarks * n];
+        Arrays.fill(fromLandmark, Float.POSITIVE_INFINITY);
+        Arrays.fill(toLandmark, Float.POSITIVE_INFINITY);
+
+        // one search per landmark and direction, on the common pool
+        IntStream.range(0, 2 * selected.length).parallel().forEach(task -> {
+            int l = task >> 1;
+            boolean forward = (task & 1) == 0;
+            dijkstra(selected[l], forward, forward ? fromLandmark : toLandmark, l * n);
+        });
+    }
+
+    // the outermost node with in- and out-links in each of `landmarks` equal angle slices around the centre
+    private int[] selectLandmarks() {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Node node : nodes) {
+            Coord coord = node.getCoord();
+            minX = Math.min(minX, coord.getX());
+            minY = Math.min(minY, coord.getY());
+            maxX = Math.max(maxX, coord.getX());
+            maxY = Math.max(maxY, coord.getY());
+        }
+        double cx = (minX + maxX) / 2;
+        double cy = (minY + maxY) / 2;
+
+        int[] best = new int[landmarks];
+        double[] bestDistance = new double[landmarks];
+        Arrays.fill(best, -1);
+        for (int v = 0; v < nodes.length; v++) {
+            if (outStart[v] == outStart[v + 1] || inStart[v] == inStart[v + 1]) {
+                continue;
+            }
+            double dx = nodes[v].getCoord().getX() - cx;
+            double dy = nodes[v].getCoord().getY() - cy;
+            double angle = Math.atan2(dy, dx) + Math.PI; // 0 .. 2 pi
+            int slice = Math.min(landmarks - 1, (int) (angle / (2 * Math.PI) * landmarks));
+            double distance = dx * dx + dy * dy;
+            if (best[slice] < 0 || distance > bestDistance[slice]) {
+                best[slice] = v;
+                bestDistance[slice] = distance;
+            }
+        }
+        // empty slices (small or elongated networks) reuse another landmark, which only costs the search time
+        int fallback = Arrays.stream(best).filter(v -> v >= 0).findFirst().orElse(0);
+        for (int l = 0; l < landmarks; l++) {
+            if (best[l] < 0) {
+                best[l] = fallback;
+            }
+        }
+        return best;
+    }
+
+    // shortest path lengths from (forward) or to (backward) the source
+    private void dijkstra(int source, boolean forward, float[] target, int offset) {
+        int n = nodes.length;
+        if (n == 0) {
+            return;
+        }
+        double[] distance = new double[n];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[n];
+        Heap heap = new Heap(n);
+        distance[source] = 0;
+        heap.push(0, source);
+        while (!heap.isEmpty()) {
+            int v = heap.pop();
+            if (settled[v]) {
+                continue;
+            }
+            settled[v] = true;
+            target[offset + v] = (float) distance[v];
+            int from = forward ? outStart[v] : inStart[v];
+            int to = forward ? outStart[v + 1] : inStart[v + 1];
+            for (int p = from; p < to; p++) {
+                int w = forward ? outTo[p] : inFrom[p];
+                double d = distance[v] + (forward ? length[p] : length[inEdge[p]]);
+                if (d < distance[w]) {
+                    distance[w] = d;
+                    heap.push(d, w);
+                }
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- persistence
+
+    String fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.putInt(landmarks).putInt(nodes.length).putInt(links.length);
+        digest.update(buffer.array(), 0, buffer.position());
+        for (Node node : nodes) {
+            digest.update(node.getId().toString().getBytes(StandardCharsets.UTF_8));
+            buffer.clear();
+            buffer.putDouble(node.getCoord().getX()).putDouble(node.getCoord().getY());
+            digest.update(buffer.array(), 0, buffer.position());
+        }
+        for (int v = 0; v < nodes.length; v++) {
+            for (int e = outStart[v]; e < outStart[v + 1]; e++) {
+                buffer.clear();
+                buffer.putInt(v).putInt(outTo[e]).putDouble(length[e]);
+                digest.update(buffer.array(), 0, buffer.position());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void write(Path file, String fingerprint) throws IOException {
+        Path tmp = Path.of(file + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, fingerprint);
+            out.writeInt(landmarks);
+            out.writeInt(nodes.length);
+            for (float d : fromLandmark) {
+                out.writeFloat(d);
+            }
+            for (float d : toLandmark) {
+                out.writeFloat(d);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private boolean load(Path file, String fingerprint) throws IOException {
+        ByteBuffer buffer = SnapshotColumns.map(file);
+        if (buffer == null || buffer.getLong() != MAGIC || buffer.getInt() != VERSION
+                || !readString(buffer).equals(fingerprint)
+                || buffer.getInt() != landmarks || buffer.getInt() != nodes.length) {
+            return false;
+        }
+        float[] from = new float[landmarks * nodes.length];
+        float[] to = new float[landmarks * nodes.length];
+        buffer.asFloatBuffer().get(from);
+        buffer.position(buffer.position() + from.length * Float.BYTES);
+        buffer.asFloatBuffer().get(to);
+        fromLandmark = from;
+        toLandmark = to;
+        return true;
+    }
+
+    // ---------------------------------------------------------------- heap
+
+    /** Binary min-heap of (key, node) pairs; a node may be pushed several times, stale entries are skipped by the caller. */
+    static final class Heap {
+        private double[] keys;
+        private int[] values;
+        private int size;
+
+        Heap(int capacity) {
+            keys = new double[Math.max(16, capacity)];
+            values = new int[keys.length];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void push(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            int result = values[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int value = values[size];
+                int i = 0;
+                while (true) {
+                    int child = 2 * i + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (keys[child] >= key) {
+                        break;
+                    }
+                    keys[i] = keys[child];
+                    values[i] = values[child];
+                    i = child;
+                }
+                keys[i] = key;
+                values[i] = value;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A* search with ALT landmark bounds on a {@link LandmarkGraph}.
+ *
+ * The landmark bounds are lengths; they are turned into cost bounds with the smallest minimum disutility per metre
+ * of all links, so the heuristic stays a lower bound for any travel disutility (e.g. per-person walk speeds). The
+ * search state is kept in arrays indexed by graph node and reset by an iteration stamp, so an instance must only
+ * be used by one thread (MATSim creates one calculator per routing thread).
+ */
+public final class LandmarkRouter implements LeastCostPathCalculator {
+
+    private final LandmarkGraph graph;
+    private final TravelDisutility travelDisutility;
+    private final TravelTime travelTime;
+    private final double costPerMetre;
+
+    private final double[] cost;
+    private final double[] time;
+    private final int[] comingFrom; // out-edge
+    private final int[] reached;
+    private final int[] settled;
+    private final LandmarkGraph.Heap heap;
+    private int iteration;
+
+    public LandmarkRouter(LandmarkGraph graph, TravelDisutility travelDisutility, TravelTime travelTime) {
+        this.graph = graph;
+        this.travelDisutility = travelDisutility;
+        this.travelTime = travelTime;
+
+        double min = Double.POSITIVE_INFINITY;
+        for (int e = 0; e < graph.links.length; e++) {
+            if (graph.length[e] > 0) {
+                min = Math.min(min, travelDisutility.getLinkMinimumTravelDisutility(graph.links[e]) / graph.length[e]);
+            }
+        }
+        // without a positive bound the search is a plain Dijkstra
+        this.costPerMetre = min > 0 && min != Double.POSITIVE_INFINITY ? min : 0;
+
+        int n = graph.size();
+        this.cost = new double[n];
+        this.time = new double[n];
+        this.comingFrom = new int[n];
+        this.reached = new int[n];
+        this.settled = new int[n];
+        this.heap = new LandmarkGraph.Heap(1024);
+    }
+
+    @Override
+    public Path calcLeastCostPath(Node fromNode, Node toNode, double starttime, Person person, Vehicle vehicle) {
+        int source = graph.index(fromNode);
+        int target = graph.index(toNode);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+        if (++iteration == Integer.MAX_VALUE) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            iteration = 1;
+        }
+
+        heap.clear();
+        visit(source, 0, starttime, -1);
+        heap.push(costPerMetre * graph.lowerBound(source, target), source);
+        while (!heap.isEmpty()) {
+            int v = heap.pop();
+            if (settled[v] == iteration) {
+                continue;
+            }
+            settled[v] = iteration;
+            if (v == target) {
+                break;
+            }
+            for (int e = graph.outStart[v]; e < graph.outStart[v + 1]; e++) {
+                int w = graph.outTo[e];
+                if (settled[w] == iteration) {
+                    continue;
+                }
+                Link link = graph.links[e];
+                double c = cost[v] + travelDisutility.getLinkTravelDisutility(link, time[v], person, vehicle);
+                if (reached[w] != iteration || c < cost[w]) {
+                    visit(w, c, time[v] + travelTime.getLinkTravelTime(link, time[v], person, vehicle), e);
+                    heap.push(c + costPerMetre * graph.lowerBound(w, target), w);
+                }
+            }
+        }
+        if (settled[target] != iteration) {
+            return null;
+        }
+
+        List<Node> nodes = new ArrayList<>();
+        List<Link> links = new ArrayList<>();
+        nodes.add(graph.nodes[target]);
+        for (int e = comingFrom[target]; e >= 0; e = comingFrom[graph.index(graph.links[e].getFromNode())]) {
+            links.add(graph.links[e]);
+            nodes.add(graph.links[e].getFromNode());
+        }
+        Collections.reverse(nodes);
+        Collections.reverse(links);
+        return new Path(nodes, links, time[target] - starttime, cost[target]);
+    }
+
+    private void visit(int v, double c, double t, int edge) {
+        reached[v] = iteration;
+        cost[v] = c;
+        time[v] = t;
+        comingFrom[v] = edge;
+    }
+}
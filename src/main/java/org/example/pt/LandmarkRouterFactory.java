@@ -0,0 +1,91 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.speedy.SpeedyALTFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Routes the given static network modes (walk, bike) with {@link LandmarkRouter}, everything else with MATSim's
+ * SpeedyALT.
+ *
+ * MATSim asks the factory for a calculator per routing thread with the mode's filtered network, whose links only
+ * allow the routed mode; a network is recognised by the first of the modes allowed on all of its links. The
+ * {@link LandmarkGraph} of a network is built once and shared by all threads, its landmark distances are kept in
+ * {@code <filePrefix>.<mode>.landmarks}.
+ *
+ * Disable with -DlandmarkRouting=false.
+ */
+public final class LandmarkRouterFactory implements LeastCostPathCalculatorFactory {
+
+    public static final int DEFAULT_LANDMARKS = 8;
+
+    private final List<String> modes;
+    private final String filePrefix;
+    private final int landmarks;
+    private final LeastCostPathCalculatorFactory delegate = new SpeedyALTFactory();
+    // networks of other modes are not cached, recognising them takes one pass over the links
+    private final Map<Network, LandmarkGraph> graphs = new WeakHashMap<>();
+
+    /**
+     * @param filePrefix prefix of the landmark files (usually the network file), null to not persist landmarks
+     */
+    public LandmarkRouterFactory(List<String> modes, String filePrefix, int landmarks) {
+        this.modes = List.copyOf(modes);
+        this.filePrefix = filePrefix;
+        this.landmarks = landmarks;
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("landmarkRouting", "true"));
+    }
+
+    @Override
+    public LeastCostPathCalculator createPathCalculator(Network network, TravelDisutility travelCosts, TravelTime travelTimes) {
+        LandmarkGraph graph;
+        synchronized (graphs) {
+            // built while holding the lock: the other routing threads wait for the same graph instead of building it too
+            graph = graphs.computeIfAbsent(network, this::buildGraph);
+        }
+        return graph != null
+                ? new LandmarkRouter(graph, travelCosts, travelTimes)
+                : delegate.createPathCalculator(network, travelCosts, travelTimes);
+    }
+
+    private LandmarkGraph buildGraph(Network network) {
+        String mode = modeOf(network);
+        if (mode == null) {
+            return null;
+        }
+        Path file = filePrefix != null ? Path.of(filePrefix + "." + mode + ".landmarks") : null;
+        return LandmarkGraph.build(network, landmarks, file);
+    }
+
+    private String modeOf(Network network) {
+        if (network.getLinks().isEmpty()) {
+            return null;
+        }
+        for (String mode : modes) {
+            long bit = ModeSets.bit(mode);
+            boolean all = true;
+            for (Link link : network.getLinks().values()) {
+                if (!ModeSets.intersects(link.getAllowedModes(), bit)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                return mode;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,422 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.collections.QuadTree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Strongly connected components of the per-mode subnetworks of a multimodal network.
+ *
+ * Every mode is analysed on its own thread: the links allowing the mode are packed into index arrays (CSR) and the
+ * components are found with an iterative Tarjan search, so there is no recursion depth limit and no per-node
+ * objects. Everything outside the largest component of a mode is an island: vehicles of that mode can either not
+ * reach it or not leave it, which makes schedule mapping and routing fail or fall back to artificial links.
+ *
+ * Islands can be pruned (the mode is removed from their links, like MATSim's MultimodalNetworkCleaner) or repaired
+ * (connected to the largest component with a pair of connector links to the nearest node, up to a maximum distance).
+ */
+public final class ModeConnectivity {
+
+    /** An island of a mode: its number of nodes and one of them, as a hint where to look. */
+    public record Island(int nodes, Id<Node> exampleNode) {
+    }
+
+    /** Components of one mode. */
+    public static final class Report {
+
+        private final String mode;
+        private final Node[] nodes;
+        private final int links;
+        private final int[] component;
+        private final int[] componentSize;
+        private final int largest;
+        // the largest component and the islands connected to it by repair()
+        private final boolean[] connected;
+
+        private Report(String mode, Node[] nodes, int links, int[] component, int[] componentSize) {
+            this.mode = mode;
+            this.nodes = nodes;
+            this.links = links;
+            this.component = component;
+            this.componentSize = componentSize;
+            int largest = -1;
+            for (int c = 0; c < componentSize.length; c++) {
+                if (largest < 0 || componentSize[c] > componentSize[largest]) {
+                    largest = c;
+                }
+            }
+            this.largest = largest;
+            this.connected = new boolean[componentSize.length];
+            if (largest >= 0) {
+                connected[largest] = true;
+            }
+        }
+
+        public String mode() {
+            return mode;
+        }
+
+        public int components() {
+            return componentSize.length;
+        }
+
+        public int largestComponentSize() {
+            return largest < 0 ? 0 : componentSize[largest];
+        }
+
+        public boolean isStronglyConnected() {
+            return componentSize.length <= 1;
+        }
+
+        /** All components but the largest, biggest first. */
+        public List<Island> islands() {
+            Id<Node>[] example = exampleNodes();
+            List<Island> islands = new ArrayList<>();
+            for (int c = 0; c < componentSize.length; c++) {
+                if (c != largest) {
+                    islands.add(new Island(componentSize[c], example[c]));
+                }
+            }
+            islands.sort((a, b) -> Integer.compare(b.nodes(), a.nodes()));
+            return islands;
+        }
+
+        boolean isConnected(Node node) {
+            int i = indexOf(node);
+            return i >= 0 && connected[component[i]];
+        }
+
+        void markConnected(int component) {
+            connected[component] = true;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder s = new StringBuilder();
+            s.append(String.format("%-10s %8d nodes %8d links %6d components, largest %d nodes",
+                    mode, nodes.length, links, components(), largestComponentSize()));
+            List<Island> islands = islands();
+            for (int i = 0; i < Math.min(5, islands.size()); i++) {
+                s.append(String.format("%n           island of %d nodes around node %s", islands.get(i).nodes(), islands.get(i).exampleNode()));
+            }
+            if (islands.size() > 5) {
+                s.append(String.format("%n           ... and %d more islands", islands.size() - 5));
+            }
+            return s.toString();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Id<Node>[] exampleNodes() {
+            Id<Node>[] example = new Id[componentSize.length];
+            for (int i = 0; i < nodes.length; i++) {
+                if (example[component[i]] == null) {
+                    example[component[i]] = nodes[i].getId();
+                }
+            }
+            return example;
+        }
+
+        private int indexOf(Node node) {
+            // nodes are sorted by id index, see analyze()
+            int key = node.getId().index();
+            int lo = 0, hi = nodes.length - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int k = nodes[mid].getId().index();
+                if (k < key) {
+                    lo = mid + 1;
+                } else if (k > key) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private ModeConnectivity() {
+    }
+
+    /**
+     * Analyses the given modes in parallel.
+     *
+     * @param modes modes to analyse, null for all modes of the network
+     * @return mode → report, sorted by mode
+     */
+    public static Map<String, Report> analyze(Network network, Collection<String> modes) {
+        Set<String> selected = new TreeSet<>();
+        if (modes != null) {
+            selected.addAll(modes);
+        } else {
+            for (Link link : network.getLinks().values()) {
+                selected.addAll(link.getAllowedModes());
+            }
+        }
+        Link[] links = network.getLinks().values().toArray(new Link[0]);
+        Map<String, Report> reports = new ConcurrentHashMap<>();
+        selected.parallelStream().forEach(mode -> reports.put(mode, analyze(links, mode)));
+        return new TreeMap<>(reports);
+    }
+
+    private static Report analyze(Link[] allLinks, String mode) {
+        // nodes of the mode, sorted by id index
+        List<Link> links = new ArrayList<>();
+        List<Node> nodeList = new ArrayList<>();
+        boolean[] seen = new boolean[Id.getNumberOfIds(Node.class)];
+        long bit = ModeSets.bit(mode);
+        for (Link link : allLinks) {
+            if ((ModeSets.mask(link.getAllowedModes()) & bit) != 0) {
+                links.add(link);
+                addOnce(link.getFromNode(), seen, nodeList);
+                addOnce(link.getToNode(), seen, nodeList);
+            }
+        }
+        Node[] nodes = nodeList.toArray(new Node[0]);
+        Arrays.sort(nodes, (a, b) -> Integer.compare(a.getId().index(), b.getId().index()));
+        int maxId = nodes.length == 0 ? 0 : nodes[nodes.length - 1].getId().index() + 1;
+        int[] local = new int[maxId];
+        for (int i = 0; i < nodes.length; i++) {
+            local[nodes[i].getId().index()] = i;
+        }
+
+        int n = nodes.length;
+        int[] outStart = new int[n + 1];
+        int[] from = new int[links.size()];
+        int[] to = new int[links.size()];
+        for (int e = 0; e < links.size(); e++) {
+            from[e] = local[links.get(e).getFromNode().getId().index()];
+            to[e] = local[links.get(e).getToNode().getId().index()];
+            outStart[from[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            outStart[v + 1] += outStart[v];
+        }
+        int[] outTo = new int[links.size()];
+        int[] fill = new int[n];
+        for (int e = 0; e < links.size(); e++) {
+            outTo[outStart[from[e]] + fill[from[e]]++] = to[e];
+        }
+
+        int[] component = new int[n];
+        int components = tarjan(n, outStart, outTo, component);
+        int[] componentSize = new int[components];
+        for (int v = 0; v < n; v++) {
+            componentSize[component[v]]++;
+        }
+        return new Report(mode, nodes, links.size(), component, componentSize);
+    }
+
+    private static void addOnce(Node node, boolean[] seen, List<Node> nodes) {
+        if (!seen[node.getId().index()]) {
+            seen[node.getId().index()] = true;
+            nodes.add(node);
+        }
+    }
+
+    /** Iterative Tarjan; writes the component of every node and returns the number of components. */
+    static int tarjan(int n, int[] outStart, int[] outTo, int[] component) {
+        int[] index = new int[n];
+        int[] low = new int[n];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        int[] stack = new int[n];
+        int sp = 0;
+        int[] callNode = new int[n];
+        int[] callEdge = new int[n];
+        int cp = 0;
+        int counter = 0;
+        int components = 0;
+
+        for (int s = 0; s < n; s++) {
+            if (index[s] >= 0) {
+                continue;
+            }
+            index[s] = low[s] = counter++;
+            stack[sp++] = s;
+            callNode[cp] = s;
+            callEdge[cp++] = outStart[s];
+            while (cp > 0) {
+                int v = callNode[cp - 1];
+                int e = callEdge[cp - 1];
+                if (e < outStart[v + 1]) {
+                    callEdge[cp - 1]++;
+                    int w = outTo[e];
+                    if (index[w] < 0) {
+                        index[w] = low[w] = counter++;
+                        stack[sp++] = w;
+                        callNode[cp] = w;
+                        callEdge[cp++] = outStart[w];
+                    } else if (component[w] < 0) {
+                        // visited and not yet assigned = still on the stack
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                } else {
+                    cp--;
+                    if (low[v] == index[v]) {
+                        int w;
+                        do {
+                            w = stack[--sp];
+                            component[w] = components;
+                        } while (w != v);
+                        components++;
+                    }
+                    if (cp > 0) {
+                        int parent = callNode[cp - 1];
+                        low[parent] = Math.min(low[parent], low[v]);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+
+    // ---------------------------------------------------------------- fixes
+
+    /**
+     * Removes the mode from all links outside the largest component (and the islands repaired so far); links without modes and nodes without links
+     * are removed from the network.
+     *
+     * @return number of links that lost the mode
+     */
+    public static int prune(Network network, Report report) {
+        List<Link> affected = new ArrayList<>();
+        for (Link link : network.getLinks().values()) {
+            if (link.getAllowedModes().contains(report.mode())
+                    && !(report.isConnected(link.getFromNode()) && report.isConnected(link.getToNode()))) {
+                affected.add(link);
+            }
+        }
+        Set<Node> touched = new HashSet<>();
+        for (Link link : affected) {
+            Set<String> modes = ModeSets.without(link.getAllowedModes(), report.mode());
+            if (modes.isEmpty()) {
+                touched.add(link.getFromNode());
+                touched.add(link.getToNode());
+                network.removeLink(link.getId());
+            } else {
+                link.setAllowedModes(modes);
+            }
+        }
+        for (Node node : touched) {
+            if (node.getInLinks().isEmpty() && node.getOutLinks().isEmpty()) {
+                network.removeNode(node.getId());
+            }
+        }
+        return affected.size();
+    }
+
+    /**
+     * Connects every island to the nearest node of the largest component with a pair of connector links (the
+     * island becomes part of the largest component); islands farther than {@code maxDistance} are pruned.
+     *
+     * @return number of connected islands
+     */
+    public static int repair(Network network, Report report, double maxDistance) {
+        String mode = report.mode();
+        if (report.largest < 0 || report.isStronglyConnected()) {
+            return 0;
+        }
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (Node node : report.nodes) {
+            minX = Math.min(minX, node.getCoord().getX());
+            minY = Math.min(minY, node.getCoord().getY());
+            maxX = Math.max(maxX, node.getCoord().getX());
+            maxY = Math.max(maxY, node.getCoord().getY());
+        }
+        QuadTree<Node> main = new QuadTree<>(minX, minY, maxX, maxY);
+        for (int i = 0; i < report.nodes.length; i++) {
+            if (report.component[i] == report.largest) {
+                main.put(report.nodes[i].getCoord().getX(), report.nodes[i].getCoord().getY(), report.nodes[i]);
+            }
+        }
+
+        // closest (island node, main node) pair per island
+        int components = report.components();
+        Node[] islandNode = new Node[components];
+        Node[] mainNode = new Node[components];
+        double[] distance = new double[components];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < report.nodes.length; i++) {
+            int c = report.component[i];
+            if (c == report.largest) {
+                continue;
+            }
+            Node node = report.nodes[i];
+            Node closest = main.getClosest(node.getCoord().getX(), node.getCoord().getY());
+            double d = Math.hypot(closest.getCoord().getX() - node.getCoord().getX(), closest.getCoord().getY() - node.getCoord().getY());
+            if (d < distance[c]) {
+                distance[c] = d;
+                islandNode[c] = node;
+                mainNode[c] = closest;
+            }
+        }
+
+        int connected = 0;
+        boolean prune = false;
+        for (int c = 0; c < components; c++) {
+            if (c == report.largest) {
+                continue;
+            }
+            if (distance[c] > maxDistance) {
+                prune = true;
+                continue;
+            }
+            double freespeed = averageFreespeed(islandNode[c], mode);
+            addConnector(network, islandNode[c], mainNode[c], mode, distance[c], freespeed);
+            addConnector(network, mainNode[c], islandNode[c], mode, distance[c], freespeed);
+            report.markConnected(c);
+            connected++;
+        }
+        if (prune) {
+            prune(network, report);
+        }
+        return connected;
+    }
+
+    private static void addConnector(Network network, Node from, Node to, String mode, double distance, double freespeed) {
+        Id<Link> id = Id.createLinkId(mode + "_connector_" + from.getId() + "_" + to.getId());
+        if (network.getLinks().containsKey(id)) {
+            return;
+        }
+        Link link = network.getFactory().createLink(id, from, to);
+        link.setLength(Math.max(1, distance));
+        link.setFreespeed(freespeed);
+        link.setCapacity(9999);
+        link.setNumberOfLanes(1);
+        link.setAllowedModes(ModeSets.of(mode));
+        network.addLink(link);
+    }
+
+    private static double averageFreespeed(Node node, String mode) {
+        double sum = 0;
+        int count = 0;
+        for (Link link : node.getOutLinks().values()) {
+            if (link.getAllowedModes().contains(mode)) {
+                sum += link.getFreespeed();
+                count++;
+            }
+        }
+        for (Link link : node.getInLinks().values()) {
+            if (link.getAllowedModes().contains(mode)) {
+                sum += link.getFreespeed();
+                count++;
+            }
+        }
+        return count > 0 ? sum / count : 10;
+    }
+}
@@ -0,0 +1,224 @@
+package org.example.pt;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned, immutable mode sets backed by a bit mask, for combining and filtering allowed modes.
+ *
+ * Every mode gets one bit of a {@code long} on first use and every distinct combination of modes exists once, so
+ * union, intersection and contains of two such sets are single bitwise operations:
+ * - {@link #of} returns the interned set of modes or of a mask
+ * - {@link #union}, {@link #with}, {@link #without}, {@link #intersection} combine sets without temporary HashSets
+ * - {@link #bit} / {@link #mask} for filters over many links: {@code (mask(link.getAllowedModes()) & bit) != 0}
+ *
+ * Limit: at most 64 distinct modes per JVM (one bit each, never released); registering a 65th mode throws an
+ * IllegalStateException. MATSim networks use a dozen or so.
+ *
+ * The sets are ordinary immutable {@code Set<String>}s (equals/hashCode as any set, iteration in registration order
+ * of the modes) and can be passed to Link.setAllowedModes. MATSim's LinkImpl copies them into its own HashSetCache
+ * though, so {@code link.getAllowedModes()} never returns one of these sets and {@link #mask} of a link's modes is
+ * computed from its content (one map lookup per mode, about the cost of a contains per mode). Links already share
+ * equal mode sets through that cache; this class saves no heap on links. Other truly immutable sets (Set.of,
+ * Collections.emptySet/singleton) are remembered by identity; unmodifiable views, whose backing set may still change,
+ * are converted by their content every time. Thread-safe.
+ */
+public final class ModeSets {
+
+    private static final int MAX_MODES = Long.SIZE;
+    // foreign sets converted so far; copy-on-write, lookups do not lock; bounded in case a caller passes fresh sets
+    private static final int MAX_FOREIGN = 1024;
+    // only sets that cannot change are remembered by identity; unmodifiable views are not, their backing set can
+    private static final Set<Class<?>> IMMUTABLE = Set.of(Set.of().getClass(), Set.of("").getClass(),
+            Collections.emptySet().getClass(), Collections.singleton("").getClass());
+
+    private static final Map<String, Long> BITS = new ConcurrentHashMap<>();
+    private static final Map<Long, ModeSet> SETS = new ConcurrentHashMap<>();
+    private static volatile String[] modes = new String[0];
+    private static volatile Map<Set<?>, ModeSet> foreign = new IdentityHashMap<>();
+
+    public static final Set<String> EMPTY = of(0L);
+
+    private ModeSets() {
+    }
+
+    // ---------------------------------------------------------------- masks
+
+    /** The bit of the mode, registered on first use; throws IllegalStateException beyond 64 modes. */
+    public static long bit(String mode) {
+        Long bit = BITS.get(mode);
+        return bit != null ? bit : register(mode);
+    }
+
+    private static synchronized long register(String mode) {
+        Long registered = BITS.get(mode);
+        if (registered != null) {
+            return registered;
+        }
+        if (modes.length == MAX_MODES) {
+            throw new IllegalStateException("More than " + MAX_MODES + " modes, cannot add " + mode);
+        }
+        long bit = 1L << modes.length;
+        String[] grown = Arrays.copyOf(modes, modes.length + 1);
+        grown[modes.length] = mode;
+        modes = grown;
+        BITS.put(mode, bit);
+        return bit;
+    }
+
+    /** The mask of the modes. */
+    public static long mask(Collection<String> modes) {
+        return modes instanceof Set<String> ? ((ModeSet) of(modes)).mask : compute(modes);
+    }
+
+    private static long compute(Collection<String> modes) {
+        long mask = 0;
+        for (String mode : modes) {
+            mask |= bit(mode);
+        }
+        return mask;
+    }
+
+    // ---------------------------------------------------------------- sets
+
+    /** The interned set of the modes in the mask. */
+    public static Set<String> of(long mask) {
+        ModeSet set = SETS.get(mask);
+        return set != null ? set : SETS.computeIfAbsent(mask, ModeSet::new);
+    }
+
+    /** The interned set of the modes. */
+    public static Set<String> of(Collection<String> modes) {
+        if (modes instanceof ModeSet set) {
+            return set;
+        }
+        if (!(modes instanceof Set<String> set)) {
+            return of(compute(modes));
+        }
+        ModeSet cached = foreign.get(set);
+        if (cached != null) {
+            return cached;
+        }
+        ModeSet interned = (ModeSet) of(compute(set));
+        remember(set, interned);
+        return interned;
+    }
+
+    public static Set<String> of(String... modes) {
+        return of(compute(Arrays.asList(modes)));
+    }
+
+    private static synchronized void remember(Set<?> set, ModeSet interned) {
+        if (IMMUTABLE.contains(set.getClass()) && foreign.size() < MAX_FOREIGN && !foreign.containsKey(set)) {
+            Map<Set<?>, ModeSet> copy = new IdentityHashMap<>(foreign);
+            copy.put(set, interned);
+            foreign = copy;
+        }
+    }
+
+    public static Set<String> union(Collection<String> a, Collection<String> b) {
+        return of(mask(a) | mask(b));
+    }
+
+    public static Set<String> intersection(Collection<String> a, Collection<String> b) {
+        return of(mask(a) & mask(b));
+    }
+
+    public static Set<String> with(Collection<String> modes, String mode) {
+        return of(mask(modes) | bit(mode));
+    }
+
+    public static Set<String> without(Collection<String> modes, String mode) {
+        return of(mask(modes) & ~bit(mode));
+    }
+
+    /** Whether the modes share at least one mode with the mask. */
+    public static boolean intersects(Collection<String> modes, long mask) {
+        return (mask(modes) & mask) != 0;
+    }
+
+    // ---------------------------------------------------------------- set
+
+    private static final class ModeSet extends AbstractSet<String> {
+
+        private final long mask;
+        private final String[] elements;
+        private final int hash;
+
+        ModeSet(long mask) {
+            this.mask = mask;
+            String[] registered = modes;
+            this.elements = new String[Long.bitCount(mask)];
+            int hash = 0;
+            int i = 0;
+            for (long rest = mask; rest != 0; rest &= rest - 1) {
+                String mode = registered[Long.numberOfTrailingZeros(rest)];
+                elements[i++] = mode;
+                hash += mode.hashCode();
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof String mode)) {
+                return false;
+            }
+            // unknown modes are not registered by a lookup
+            Long bit = BITS.get(mode);
+            return bit != null && (mask & bit) != 0;
+        }
+
+        @Override
+        public boolean containsAll(Collection<?> c) {
+            if (c instanceof ModeSet other) {
+                return (other.mask & ~mask) == 0;
+            }
+            return super.containsAll(c);
+        }
+
+        @Override
+        public int size() {
+            return elements.length;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<>() {
+                private int next;
+
+                @Override
+                public boolean hasNext() {
+                    return next < elements.length;
+                }
+
+                @Override
+                public String next() {
+                    if (next == elements.length) {
+                        throw new NoSuchElementException();
+                    }
+                    return elements[next++];
+                }
+            };
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            // interned: equal masks are the same object
+            return o == this || !(o instanceof ModeSet) && super.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Per-mode subnetworks of a multimodal network, built once per network and shared by all consumers.
+ *
+ * The links of every mode are kept as index arrays into the network's link order, computed in one pass over the
+ * links for all modes. They are not persisted: checking that a stored index still matches the network takes the
+ * same pass over the links' allowed modes as computing it.
+ *
+ * {@link #get(String)} returns the read-only subnetwork of one mode, built on first use with the semantics of
+ * MATSim's TransportModeNetworkFilter (own node and link objects, links only allow that mode, no attributes), so it
+ * can replace the networks MATSim filters for routing (see {@link ModeSubnetworksModule}). It is built once per
+ * network and mode and shared, not once per consumer. It cannot be a view over the full network: routers walk
+ * {@code link.getFromNode()} / {@code node.getOutLinks()}, which on the full network's objects reach links of other
+ * modes, so a view would need a wrapper per node and link, i.e. a copy. Consumers that modify their network get
+ * their own {@link #copy(Set)} instead.
+ */
+public final class ModeSubnetworks {
+
+    // networks live as long as the JVM here (one per run, or shared by all variants of a sweep), entries stay
+    private static final Map<Network, ModeSubnetworks> REGISTRY = new IdentityHashMap<>();
+
+    private final Network network;
+    private final Link[] links;
+    private final Map<String, int[]> linksByMode;
+    private final Map<String, Network> subnetworks = new HashMap<>();
+
+    private ModeSubnetworks(Network network, Link[] links, Map<String, int[]> linksByMode) {
+        this.network = network;
+        this.links = links;
+        this.linksByMode = linksByMode;
+    }
+
+    /** The subnetworks of the network, shared by all callers with the same network object. */
+    public static ModeSubnetworks of(Network network) {
+        synchronized (REGISTRY) {
+            return REGISTRY.computeIfAbsent(network, ModeSubnetworks::create);
+        }
+    }
+
+    /**
+     * New, unshared subnetworks of the network, for networks that are still being modified (the shared instance of
+     * {@link #of} would not see the changes).
+     */
+    public static ModeSubnetworks index(Network network) {
+        return create(network);
+    }
+
+    private static ModeSubnetworks create(Network network) {
+        Link[] links = network.getLinks().values().toArray(new Link[0]);
+        Map<String, IntArrayList> lists = new TreeMap<>();
+        for (int i = 0; i < links.length; i++) {
+            for (String mode : links[i].getAllowedModes()) {
+                lists.computeIfAbsent(mode, m -> new IntArrayList()).add(i);
+            }
+        }
+        Map<String, int[]> linksByMode = new TreeMap<>();
+        lists.forEach((mode, list) -> linksByMode.put(mode, list.toIntArray()));
+        return new ModeSubnetworks(network, links, linksByMode);
+    }
+
+    public Set<String> modes() {
+        return linksByMode.keySet();
+    }
+
+    /** Positions of the links allowing the mode in the network's link order. */
+    public int[] linkIndices(String mode) {
+        return linksByMode.getOrDefault(mode, new int[0]).clone();
+    }
+
+    /**
+     * The shared subnetwork of the mode (empty if no link allows it). Must not be modified.
+     */
+    public synchronized Network get(String mode) {
+        return subnetworks.computeIfAbsent(mode, m -> build(linksByMode.getOrDefault(m, new int[0]), Set.of(m), false));
+    }
+
+    /**
+     * A new network with the links allowing any of the modes; allowed modes are reduced to those modes, node and
+     * link attributes are copied. The caller owns the copy.
+     */
+    public Network copy(Set<String> modes) {
+        int[] union = modes.stream()
+                .map(linksByMode::get)
+                .filter(Objects::nonNull)
+                .flatMapToInt(Arrays::stream)
+                .sorted()
+                .distinct()
+                .toArray();
+        return build(union, modes, true);
+    }
+
+    private Network build(int[] indices, Set<String> modes, boolean copyAttributes) {
+        Network subnetwork = NetworkUtils.createNetwork();
+        subnetwork.setCapacityPeriod(network.getCapacityPeriod());
+        subnetwork.setEffectiveCellSize(network.getEffectiveCellSize());
+        subnetwork.setEffectiveLaneWidth(network.getEffectiveLaneWidth());
+        NetworkFactory factory = subnetwork.getFactory();
+        long mask = ModeSets.mask(modes);
+
+        for (int i : indices) {
+            Link link = links[i];
+            Link copy = factory.createLink(link.getId(),
+                    node(subnetwork, link.getFromNode(), copyAttributes),
+                    node(subnetwork, link.getToNode(), copyAttributes));
+            copy.setLength(link.getLength());
+            copy.setFreespeed(link.getFreespeed());
+            copy.setCapacity(link.getCapacity());
+            copy.setNumberOfLanes(link.getNumberOfLanes());
+            copy.setAllowedModes(ModeSets.of(ModeSets.mask(link.getAllowedModes()) & mask));
+            if (copyAttributes) {
+                AttributesUtils.copyAttributesFromTo(link, copy);
+            }
+            subnetwork.addLink(copy);
+        }
+        return subnetwork;
+    }
+
+    private static Node node(Network subnetwork, Node node, boolean copyAttributes) {
+        Node copy = subnetwork.getNodes().get(node.getId());
+        if (copy == null) {
+            copy = subnetwork.getFactory().createNode(node.getId(), node.getCoord());
+            if (copyAttributes) {
+                AttributesUtils.copyAttributesFromTo(node, copy);
+            }
+            subnetwork.addNode(copy);
+        }
+        return copy;
+    }
+}
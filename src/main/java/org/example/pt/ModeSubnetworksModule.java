@@ -0,0 +1,33 @@
+package org.example.pt;
+
+import com.google.inject.Inject;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.router.SingleModeNetworksCache;
+
+/**
+ * Fills MATSim's single mode network cache with the shared {@link ModeSubnetworks} of the scenario network, so the
+ * network routing modes do not filter the network again (once per controller, i.e. once per variant of a sweep).
+ *
+ * controller.addOverridingModule(new ModeSubnetworksModule());
+ */
+public final class ModeSubnetworksModule extends AbstractModule {
+
+    @Override
+    public void install() {
+        // runs while the injector is created, before any routing module asks the cache
+        binder().requestInjection(new Prefill());
+    }
+
+    private static final class Prefill {
+
+        @Inject
+        void prefill(SingleModeNetworksCache cache, Network network, Config config) {
+            ModeSubnetworks subnetworks = ModeSubnetworks.of(network);
+            for (String mode : config.routing().getNetworkModes()) {
+                cache.getSingleModeNetworksCache().put(mode, subnetworks.get(mode));
+            }
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Structural diff of two MATSim networks.
+ * - Nodes: coordinates and attributes
+ * - Links: from/to node, length, freespeed, capacity, lanes, allowed modes and attributes
+ *
+ * Ids are split into partitions (by id index) which are compared in parallel. Entities present in both networks are
+ * compared field by field on the primitive values; strings for the report are only built for fields that differ.
+ * Entries are sorted by entity, id and field, so the report does not depend on the number of partitions.
+ */
+public final class NetworkDiff {
+
+    public enum Change {ADDED, REMOVED, CHANGED}
+
+    public static final String NODE = "node";
+    public static final String LINK = "link";
+
+    /** One difference. Added/removed entities have one entry with an empty field. */
+    public record Entry(String entity, String id, Change change, String field, String baseValue, String otherValue) {
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.comparing(Entry::entity)
+            .thenComparing(Entry::id)
+            .thenComparing(Entry::field);
+
+    private final List<Entry> entries;
+
+    private NetworkDiff(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public static NetworkDiff compare(Network base, Network other) {
+        return compare(base, other, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Compares {@code other} against {@code base}: ADDED = only in other, REMOVED = only in base.
+     */
+    public static NetworkDiff compare(Network base, Network other, int partitions) {
+        List<Id<Node>>[] baseNodes = partition(base.getNodes().keySet(), partitions);
+        List<Id<Node>>[] otherNodes = partition(other.getNodes().keySet(), partitions);
+        List<Id<Link>>[] baseLinks = partition(base.getLinks().keySet(), partitions);
+        List<Id<Link>>[] otherLinks = partition(other.getLinks().keySet(), partitions);
+
+        List<Entry> entries = IntStream.range(0, partitions).parallel()
+                .mapToObj(p -> {
+                    List<Entry> result = new ArrayList<>();
+                    diffNodes(base, other, baseNodes[p], otherNodes[p], result);
+                    diffLinks(base, other, baseLinks[p], otherLinks[p], result);
+                    return result;
+                })
+                .flatMap(List::stream)
+                .sorted(ORDER)
+                .collect(Collectors.toList());
+
+        return new NetworkDiff(entries);
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /** Number of distinct entities of the given type with the given change. */
+    public long count(String entity, Change change) {
+        return entries.stream()
+                .filter(e -> e.entity().equals(entity) && e.change() == change)
+                .map(Entry::id)
+                .distinct()
+                .count();
+    }
+
+    public void printSummary() {
+        for (String entity : List.of(NODE, LINK)) {
+            System.out.println(entity + "s: " + count(entity, Change.ADDED) + " added, "
+                    + count(entity, Change.REMOVED) + " removed, "
+                    + count(entity, Change.CHANGED) + " changed");
+        }
+    }
+
+    /** Writes all entries as semicolon separated CSV (entity;id;change;field;base;other). */
+    public void writeCsv(String file) {
+        try (BufferedWriter writer = IOUtils.getBufferedWriter(file)) {
+            writer.write("entity;id;change;field;base;other");
+            writer.newLine();
+            for (Entry e : entries) {
+                writer.write(e.entity() + ";" + csv(e.id()) + ";" + e.change() + ";" + csv(e.field()) + ";"
+                        + csv(e.baseValue()) + ";" + csv(e.otherValue()));
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write network diff to " + file, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- comparison
+
+    private static void diffNodes(Network base, Network other, List<Id<Node>> baseIds, List<Id<Node>> otherIds, List<Entry> result) {
+        for (Id<Node> id : baseIds) {
+            Node baseNode = base.getNodes().get(id);
+            Node otherNode = other.getNodes().get(id);
+            if (otherNode == null) {
+                result.add(new Entry(NODE, id.toString(), Change.REMOVED, "", coordString(baseNode.getCoord()), ""));
+            } else {
+                if (!sameCoord(baseNode.getCoord(), otherNode.getCoord())) {
+                    result.add(new Entry(NODE, id.toString(), Change.CHANGED, "coord",
+                            coordString(baseNode.getCoord()), coordString(otherNode.getCoord())));
+                }
+                compareAttributes(NODE, id, baseNode.getAttributes(), otherNode.getAttributes(), result);
+            }
+        }
+        for (Id<Node> id : otherIds) {
+            if (!base.getNodes().containsKey(id)) {
+                result.add(new Entry(NODE, id.toString(), Change.ADDED, "", "", coordString(other.getNodes().get(id).getCoord())));
+            }
+        }
+    }
+
+    private static void diffLinks(Network base, Network other, List<Id<Link>> baseIds, List<Id<Link>> otherIds, List<Entry> result) {
+        for (Id<Link> id : baseIds) {
+            Link baseLink = base.getLinks().get(id);
+            Link otherLink = other.getLinks().get(id);
+            if (otherLink == null) {
+                result.add(new Entry(LINK, id.toString(), Change.REMOVED, "", "", ""));
+            } else {
+                compareField(LINK, id, "from", baseLink.getFromNode().getId(), otherLink.getFromNode().getId(), result);
+                compareField(LINK, id, "to", baseLink.getToNode().getId(), otherLink.getToNode().getId(), result);
+                compareField(LINK, id, "length", baseLink.getLength(), otherLink.getLength(), result);
+                compareField(LINK, id, "freespeed", baseLink.getFreespeed(), otherLink.getFreespeed(), result);
+                compareField(LINK, id, "capacity", baseLink.getCapacity(), otherLink.getCapacity(), result);
+                compareField(LINK, id, "lanes", baseLink.getNumberOfLanes(), otherLink.getNumberOfLanes(), result);
+                if (!baseLink.getAllowedModes().equals(otherLink.getAllowedModes())) {
+                    result.add(new Entry(LINK, id.toString(), Change.CHANGED, "modes",
+                            modesString(baseLink.getAllowedModes()), modesString(otherLink.getAllowedModes())));
+                }
+                compareAttributes(LINK, id, baseLink.getAttributes(), otherLink.getAttributes(), result);
+            }
+        }
+        for (Id<Link> id : otherIds) {
+            if (!base.getLinks().containsKey(id)) {
+                result.add(new Entry(LINK, id.toString(), Change.ADDED, "", "", ""));
+            }
+        }
+    }
+
+    private static void compareField(String entity, Id<?> id, String field, double baseValue, double otherValue, List<Entry> result) {
+        if (Double.compare(baseValue, otherValue) != 0) {
+            result.add(new Entry(entity, id.toString(), Change.CHANGED, field, Double.toString(baseValue), Double.toString(otherValue)));
+        }
+    }
+
+    private static void compareField(String entity, Id<?> id, String field, Id<?> baseValue, Id<?> otherValue, List<Entry> result) {
+        if (!baseValue.equals(otherValue)) {
+            result.add(new Entry(entity, id.toString(), Change.CHANGED, field, baseValue.toString(), otherValue.toString()));
+        }
+    }
+
+    private static void compareAttributes(String entity, Id<?> id, Attributes base, Attributes other, List<Entry> result) {
+        if (base.getAsMap().equals(other.getAsMap())) {
+            return;
+        }
+        Set<String> keys = new TreeSet<>(base.getAsMap().keySet());
+        keys.addAll(other.getAsMap().keySet());
+        for (String key : keys) {
+            Object baseValue = base.getAttribute(key);
+            Object otherValue = other.getAttribute(key);
+            if (!Objects.equals(baseValue, otherValue)) {
+                result.add(new Entry(entity, id.toString(), Change.CHANGED, "attribute:" + key,
+                        baseValue == null ? "" : baseValue.toString(), otherValue == null ? "" : otherValue.toString()));
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<Id<T>>[] partition(Set<Id<T>> ids, int partitions) {
+        List<Id<T>>[] result = new List[partitions];
+        for (int i = 0; i < partitions; i++) {
+            result[i] = new ArrayList<>();
+        }
+        for (Id<T> id : ids) {
+            result[id.index() % partitions].add(id);
+        }
+        return result;
+    }
+
+    private static boolean sameCoord(Coord a, Coord b) {
+        return Double.compare(a.getX(), b.getX()) == 0 && Double.compare(a.getY(), b.getY()) == 0
+                && a.hasZ() == b.hasZ() && (!a.hasZ() || Double.compare(a.getZ(), b.getZ()) == 0);
+    }
+
+    private static String coordString(Coord coord) {
+        return coord.hasZ() ? coord.getX() + " " + coord.getY() + " " + coord.getZ() : coord.getX() + " " + coord.getY();
+    }
+
+    private static String modesString(Set<String> modes) {
+        return String.join(",", new TreeSet<>(modes));
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(';') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,330 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.io.NetworkWriter;
+import org.matsim.utils.objectattributes.attributable.Attributable;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Merges any number of MATSim networks into the first one in a single pass, e.g. base roads + Metrolink + rail +
+ * cycling overlays, instead of chaining several read–merge–write cycles of {@link MergeNetworks}.
+ * - The input files are read concurrently ({@link ParallelInputLoader#readNetworks})
+ * - Nodes and links missing in the merged network are added with all their fields and attributes; existing nodes
+ *   keep their coordinates
+ * - For a link present in several inputs every field is resolved by its {@link Policies policy}, in input order:
+ *   "first" is the earliest input having the link, "last" the latest
+ *
+ * The result only depends on the order of the inputs, not on which file finishes loading first: every link and
+ * node is resolved on its own, earlier inputs before later ones. {@link #write} writes nodes and links sorted by id,
+ * since MATSim's iteration order follows the id indices, which depend on the concurrent load order (see the note on
+ * {@link ParallelInputLoader}); equal inputs give a byte-identical file, so content-hash caches stay valid.
+ *
+ * Only loading is parallel. The merge itself is one sequential pass: every step adds to or changes the merged
+ * network, whose maps are not thread-safe, and a link present in several inputs has to be resolved in input order.
+ * Per link it is a few field writes, small next to parsing the inputs.
+ *
+ * Usage: java NetworkMerger [--policies modes=union,capacity=max,freespeed=first,attributes=fill] output.xml.gz
+ * network1.xml.gz network2.xml.gz ...
+ */
+public final class NetworkMerger {
+
+    /** Allowed modes of a link present in several inputs. */
+    public enum ModePolicy {
+        UNION, INTERSECTION, FIRST, LAST
+    }
+
+    /** Capacity or freespeed of a link present in several inputs. */
+    public enum ValuePolicy {
+        FIRST, LAST, MIN, MAX
+    }
+
+    /**
+     * Attributes of a node or link present in several inputs:
+     * - KEEP: only the attributes of the first input
+     * - FILL: attributes of later inputs are added if missing
+     * - OVERWRITE: attributes of later inputs replace earlier ones
+     */
+    public enum AttributePolicy {
+        KEEP, FILL, OVERWRITE
+    }
+
+    /** Conflict policy per field; length and number of lanes always come from the first input. */
+    public record Policies(ModePolicy modes, ValuePolicy capacity, ValuePolicy freespeed, AttributePolicy attributes) {
+
+        /** The rules of {@link MergeNetworks}: modes are united, everything else is kept from the first input. */
+        public static final Policies DEFAULT = new Policies(ModePolicy.UNION, ValuePolicy.FIRST, ValuePolicy.FIRST, AttributePolicy.KEEP);
+
+        public Policies {
+            Objects.requireNonNull(modes);
+            Objects.requireNonNull(capacity);
+            Objects.requireNonNull(freespeed);
+            Objects.requireNonNull(attributes);
+        }
+
+        /** Parses {@code field=policy,...} (fields modes, capacity, freespeed, attributes); missing fields use {@link #DEFAULT}. */
+        public static Policies parse(String spec) {
+            ModePolicy modes = DEFAULT.modes();
+            ValuePolicy capacity = DEFAULT.capacity();
+            ValuePolicy freespeed = DEFAULT.freespeed();
+            AttributePolicy attributes = DEFAULT.attributes();
+            for (String part : spec.split(",")) {
+                if (part.isBlank()) {
+                    continue;
+                }
+                String[] keyValue = part.split("=", 2);
+                if (keyValue.length != 2) {
+                    throw new IllegalArgumentException("Expected field=policy, got " + part);
+                }
+                String value = keyValue[1].trim().toUpperCase(Locale.ROOT);
+                switch (keyValue[0].trim()) {
+                    case "modes" -> modes = ModePolicy.valueOf(value);
+                    case "capacity" -> capacity = ValuePolicy.valueOf(value);
+                    case "freespeed" -> freespeed = ValuePolicy.valueOf(value);
+                    case "attributes" -> attributes = AttributePolicy.valueOf(value);
+                    default -> throw new IllegalArgumentException("Unknown field " + keyValue[0] + " (modes, capacity, freespeed or attributes)");
+                }
+            }
+            return new Policies(modes, capacity, freespeed, attributes);
+        }
+    }
+
+    private NetworkMerger() {
+    }
+
+    public static void main(String[] args) {
+        List<String> arguments = new ArrayList<>(Arrays.asList(args));
+        Policies policies = Policies.DEFAULT;
+        if (arguments.size() >= 2 && arguments.get(0).equals("--policies")) {
+            policies = Policies.parse(arguments.get(1));
+            arguments = arguments.subList(2, arguments.size());
+        }
+        if (arguments.size() < 3) {
+            System.err.println("Usage: NetworkMerger [--policies modes=union,capacity=first,freespeed=first,attributes=keep] "
+                    + "<outputMergedNetwork.xml> <network1.xml> <network2.xml> [<network3.xml> ...]");
+            System.exit(1);
+        }
+        String outputFile = arguments.get(0);
+        String[] inputFiles = arguments.subList(1, arguments.size()).toArray(new String[0]);
+
+        Network merged = merge(Arrays.asList(ParallelInputLoader.readNetworks(inputFiles)), policies);
+
+        write(merged, outputFile);
+        System.out.println("Merge complete. Merged network written to: " + outputFile);
+        System.out.println("Final network has " + merged.getNodes().size() + " nodes and " +
+                merged.getLinks().size() + " links.");
+    }
+
+    /**
+     * Merges the networks into the first one (in place) and returns it; the other networks are not changed.
+     */
+    public static Network merge(List<Network> networks, Policies policies) {
+        if (networks.isEmpty()) {
+            throw new IllegalArgumentException("At least one network is required");
+        }
+        Network merged = networks.get(0);
+
+        int nodesAdded = 0;
+        int linksAdded = 0;
+        int linksMerged = 0;
+        for (int i = 1; i < networks.size(); i++) {
+            Network input = networks.get(i);
+
+            for (Node node : input.getNodes().values()) {
+                Node existing = merged.getNodes().get(node.getId());
+                if (existing == null) {
+                    Node newNode = merged.getFactory().createNode(node.getId(), node.getCoord());
+                    merged.addNode(newNode);
+                    AttributesUtils.copyAttributesFromTo(node, newNode);
+                    nodesAdded++;
+                } else {
+                    mergeAttributes(node, existing, policies.attributes());
+                }
+            }
+
+            for (Link link : input.getLinks().values()) {
+                Link existing = merged.getLinks().get(link.getId());
+                if (existing == null) {
+                    Link newLink = merged.getFactory().createLink(link.getId(),
+                            merged.getNodes().get(link.getFromNode().getId()),
+                            merged.getNodes().get(link.getToNode().getId()));
+                    newLink.setLength(link.getLength());
+                    newLink.setFreespeed(link.getFreespeed());
+                    newLink.setCapacity(link.getCapacity());
+                    newLink.setNumberOfLanes(link.getNumberOfLanes());
+                    newLink.setAllowedModes(link.getAllowedModes());
+                    merged.addLink(newLink);
+                    AttributesUtils.copyAttributesFromTo(link, newLink);
+                    linksAdded++;
+                } else {
+                    existing.setAllowedModes(modes(policies.modes(), existing, link));
+                    existing.setCapacity(value(policies.capacity(), existing.getCapacity(), link.getCapacity()));
+                    existing.setFreespeed(value(policies.freespeed(), existing.getFreespeed(), link.getFreespeed()));
+                    mergeAttributes(link, existing, policies.attributes());
+                    linksMerged++;
+                }
+            }
+        }
+
+        System.out.println("Merged " + networks.size() + " networks: added " + nodesAdded + " nodes and " + linksAdded
+                + " links, resolved " + linksMerged + " links present in several inputs (" + policies + ")");
+        return merged;
+    }
+
+    /** Writes the network with nodes and links sorted by id, independent of the order the ids were created in. */
+    public static void write(Network network, String outputFile) {
+        Network sorted = new SortedNetwork(network);
+        BlockGzip.write(outputFile, out -> new NetworkWriter(sorted).write(out));
+    }
+
+    /**
+     * Read-only network with nodes and links in id order, for the writer. A copy into a new network would not do:
+     * its maps iterate in id index order again, which is the (load) order the ids were created in.
+     */
+    private static final class SortedNetwork implements Network {
+
+        private final Network network;
+        private final Map<Id<Node>, Node> nodes;
+        private final Map<Id<Link>, Link> links;
+
+        SortedNetwork(Network network) {
+            this.network = network;
+            Map<Id<Node>, Node> nodes = new LinkedHashMap<>();
+            network.getNodes().values().stream()
+                    .sorted(Comparator.comparing(node -> node.getId().toString()))
+                    .forEach(node -> nodes.put(node.getId(), node));
+            Map<Id<Link>, Link> links = new LinkedHashMap<>();
+            network.getLinks().values().stream()
+                    .sorted(Comparator.comparing(link -> link.getId().toString()))
+                    .forEach(link -> links.put(link.getId(), link));
+            this.nodes = Collections.unmodifiableMap(nodes);
+            this.links = Collections.unmodifiableMap(links);
+        }
+
+        @Override
+        public Map<Id<Node>, ? extends Node> getNodes() {
+            return nodes;
+        }
+
+        @Override
+        public Map<Id<Link>, ? extends Link> getLinks() {
+            return links;
+        }
+
+        @Override
+        public NetworkFactory getFactory() {
+            return network.getFactory();
+        }
+
+        @Override
+        public Attributes getAttributes() {
+            return network.getAttributes();
+        }
+
+        @Override
+        public String getName() {
+            return network.getName();
+        }
+
+        @Override
+        public double getCapacityPeriod() {
+            return network.getCapacityPeriod();
+        }
+
+        @Override
+        public double getEffectiveCellSize() {
+            return network.getEffectiveCellSize();
+        }
+
+        @Override
+        public double getEffectiveLaneWidth() {
+            return network.getEffectiveLaneWidth();
+        }
+
+        @Override
+        public void addNode(Node node) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addLink(Link link) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Node removeNode(Id<Node> nodeId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Link removeLink(Id<Link> linkId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setName(String name) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setCapacityPeriod(double capacityPeriod) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setEffectiveCellSize(double effectiveCellSize) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void setEffectiveLaneWidth(double effectiveLaneWidth) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static Set<String> modes(ModePolicy policy, Link existing, Link link) {
+        return switch (policy) {
+            case UNION -> ModeSets.union(existing.getAllowedModes(), link.getAllowedModes());
+            case INTERSECTION -> ModeSets.intersection(existing.getAllowedModes(), link.getAllowedModes());
+            case FIRST -> existing.getAllowedModes();
+            case LAST -> link.getAllowedModes();
+        };
+    }
+
+    private static double value(ValuePolicy policy, double existing, double value) {
+        return switch (policy) {
+            case FIRST -> existing;
+            case LAST -> value;
+            case MIN -> Math.min(existing, value);
+            case MAX -> Math.max(existing, value);
+        };
+    }
+
+    private static void mergeAttributes(Attributable from, Attributable to, AttributePolicy policy) {
+        switch (policy) {
+            case KEEP -> {
+            }
+            case FILL -> from.getAttributes().getAsMap().forEach((key, value) -> {
+                if (to.getAttributes().getAttribute(key) == null) {
+                    to.getAttributes().putAttribute(key, value);
+                }
+            });
+            case OVERWRITE -> AttributesUtils.copyAttributesFromTo(from, to);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.example.pt.SnapshotColumns.AttributeColumns;
+import org.example.pt.SnapshotColumns.StringTable;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.example.pt.SnapshotColumns.readDoubles;
+import static org.example.pt.SnapshotColumns.readInts;
+import static org.example.pt.SnapshotColumns.readStamp;
+import static org.example.pt.SnapshotColumns.readString;
+import static org.example.pt.SnapshotColumns.writeInts;
+import static org.example.pt.SnapshotColumns.writeStamp;
+import static org.example.pt.SnapshotColumns.writeString;
+
+/**
+ * Binary snapshot cache for MATSim network files.
+ *
+ * The first time a network file is read, it is parsed from XML and a snapshot is written next to it
+ * ({@code <file>.snapshot}). Later reads memory-map the snapshot instead of parsing the XML, as long as the
+ * source file is unchanged:
+ * - if its size and modification time match the ones in the snapshot header, it is not read at all
+ * - otherwise its SHA-256 content hash is compared with the one in the header; if only the modification time changed
+ *   (a copy, a touch, a checkout), the new stamp is written into the header so the next read is fast again
+ *
+ * The snapshot is columnar: all strings (ids, modes, attribute keys and string values) are interned in one table,
+ * nodes are stored as id/x/y/z arrays, links as id/from/to/length/freespeed/capacity/lanes/mode-set arrays, and
+ * distinct mode sets are stored once. Attributes of type String, Double, Float, Integer, Long and Boolean are
+ * supported; networks with other attribute types are not cached.
+ *
+ * Disable with -DnetworkSnapshot=false.
+ */
+public final class NetworkSnapshot {
+
+    private static final long MAGIC = 0x4D415453494D4E54L; // "MATSIMNT"
+    private static final int VERSION = 2;
+    private static final String SUFFIX = ".snapshot";
+
+    private NetworkSnapshot() {
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("networkSnapshot", "true"));
+    }
+
+    public static Network readNetwork(String networkFile) {
+        Network network = NetworkUtils.createNetwork();
+        read(networkFile, network);
+        return network;
+    }
+
+    /** Reads the network file into the (empty) target network, from its snapshot if a valid one exists. */
+    public static void read(String networkFile, Network target) {
+        if (!isEnabled()) {
+            BlockGzip.readNetwork(networkFile, target);
+            return;
+        }
+
+        ContentHash.Stamp stamp = ContentHash.Stamp.of(networkFile);
+        Path snapshot = Path.of(networkFile + SUFFIX);
+
+        if (Files.isRegularFile(snapshot)) {
+            try {
+                if (load(snapshot, networkFile, stamp, target)) {
+                    System.out.println("Network read from snapshot " + snapshot);
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable network snapshot " + snapshot + ": " + e.getMessage());
+                clear(target);
+            }
+        }
+
+        BlockGzip.readNetwork(networkFile, target);
+
+        try {
+            write(target, stamp, ContentHash.ofFile(networkFile), snapshot);
+        } catch (UnsupportedOperationException e) {
+            System.out.println("Network snapshot not written: " + e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not write network snapshot " + snapshot + ": " + e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------- write
+
+    static void write(Network network, ContentHash.Stamp stamp, String hash, Path snapshot) throws IOException {
+        StringTable strings = new StringTable();
+
+        List<Node> nodes = new ArrayList<>(network.getNodes().values());
+        Object2IntOpenHashMap<Id<Node>> nodeIndex = new Object2IntOpenHashMap<>(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeIndex.put(nodes.get(i).getId(), i);
+        }
+
+        List<Link> links = new ArrayList<>(network.getLinks().values());
+        Object2IntOpenHashMap<Set<String>> modeSetIndex = new Object2IntOpenHashMap<>();
+        List<Set<String>> modeSets = new ArrayList<>();
+        int[] linkModes = new int[links.size()];
+        for (int i = 0; i < links.size(); i++) {
+            Set<String> modes = links.get(i).getAllowedModes();
+            int index = modeSetIndex.getOrDefault(modes, -1);
+            if (index < 0) {
+                index = modeSets.size();
+                modeSets.add(modes);
+                modeSetIndex.put(modes, index);
+            }
+            linkModes[i] = index;
+        }
+
+        // encode attributes first, they add their keys and string values to the string table
+        AttributeColumns networkAttributes = AttributeColumns.encode(List.of(network.getAttributes()), strings);
+        List<Attributes> nodeAttributeList = new ArrayList<>(nodes.size());
+        for (Node node : nodes) {
+            nodeAttributeList.add(node.getAttributes());
+        }
+        AttributeColumns nodeAttributes = AttributeColumns.encode(nodeAttributeList, strings);
+        List<Attributes> linkAttributeList = new ArrayList<>(links.size());
+        for (Link link : links) {
+            linkAttributeList.add(link.getAttributes());
+        }
+        AttributeColumns linkAttributes = AttributeColumns.encode(linkAttributeList, strings);
+
+        int[] nodeIds = new int[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeIds[i] = strings.index(nodes.get(i).getId().toString());
+        }
+        int[] linkIds = new int[links.size()];
+        for (int i = 0; i < links.size(); i++) {
+            linkIds[i] = strings.index(links.get(i).getId().toString());
+        }
+        int[][] modeSetStrings = new int[modeSets.size()][];
+        for (int i = 0; i < modeSets.size(); i++) {
+            modeSetStrings[i] = modeSets.get(i).stream().sorted().mapToInt(strings::index).toArray();
+        }
+
+        Path tmp = Path.of(snapshot + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            writeStamp(out, stamp);
+            writeString(out, hash);
+
+            out.writeInt(strings.size());
+            for (String s : strings.values) {
+                writeString(out, s);
+            }
+
+            out.writeBoolean(network.getName() != null);
+            if (network.getName() != null) {
+                writeString(out, network.getName());
+            }
+            out.writeDouble(network.getCapacityPeriod());
+            out.writeDouble(network.getEffectiveCellSize());
+            out.writeDouble(network.getEffectiveLaneWidth());
+            networkAttributes.write(out);
+
+            out.writeInt(nodes.size());
+            writeInts(out, nodeIds);
+            for (Node node : nodes) {
+                out.writeDouble(node.getCoord().getX());
+            }
+            for (Node node : nodes) {
+                out.writeDouble(node.getCoord().getY());
+            }
+            for (Node node : nodes) {
+                out.writeDouble(node.getCoord().hasZ() ? node.getCoord().getZ() : Double.NaN);
+            }
+            nodeAttributes.write(out);
+
+            out.writeInt(modeSetStrings.length);
+            for (int[] modeSet : modeSetStrings) {
+                out.writeInt(modeSet.length);
+                writeInts(out, modeSet);
+            }
+
+            out.writeInt(links.size());
+            writeInts(out, linkIds);
+            for (Link link : links) {
+                out.writeInt(nodeIndex.getInt(link.getFromNode().getId()));
+            }
+            for (Link link : links) {
+                out.writeInt(nodeIndex.getInt(link.getToNode().getId()));
+            }
+            for (Link link : links) {
+                out.writeDouble(link.getLength());
+            }
+            for (Link link : links) {
+                out.writeDouble(link.getFreespeed());
+            }
+            for (Link link : links) {
+                out.writeDouble(link.getCapacity());
+            }
+            for (Link link : links) {
+                out.writeDouble(link.getNumberOfLanes());
+            }
+            writeInts(out, linkModes);
+            linkAttributes.write(out);
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---------------------------------------------------------------- read
+
+    // Returns false if the snapshot belongs to another version of the source file; the source is only hashed if its
+    // size or modification time differ from the stamp in the header
+    static boolean load(Path snapshot, String networkFile, ContentHash.Stamp stamp, Network target) throws IOException {
+        MappedByteBuffer buffer = SnapshotColumns.map(snapshot);
+        if (buffer == null || buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+            return false;
+        }
+        ContentHash.Stamp snapshotStamp = readStamp(buffer);
+        String hash = readString(buffer);
+        if (!snapshotStamp.equals(stamp)) {
+            if (snapshotStamp.size() != stamp.size() || !ContentHash.ofFile(networkFile).equals(hash)) {
+                return false;
+            }
+            SnapshotColumns.restamp(snapshot, stamp);
+        }
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+
+        if (buffer.get() != 0) {
+            target.setName(readString(buffer));
+        }
+        target.setCapacityPeriod(buffer.getDouble());
+        target.setEffectiveCellSize(buffer.getDouble());
+        target.setEffectiveLaneWidth(buffer.getDouble());
+        AttributeColumns.read(buffer, 1).apply(0, target.getAttributes(), strings);
+
+        NetworkFactory factory = target.getFactory();
+
+        int nodeCount = buffer.getInt();
+        int[] nodeIds = readInts(buffer, nodeCount);
+        double[] x = readDoubles(buffer, nodeCount);
+        double[] y = readDoubles(buffer, nodeCount);
+        double[] z = readDoubles(buffer, nodeCount);
+        AttributeColumns nodeAttributes = AttributeColumns.read(buffer, nodeCount);
+        Node[] nodes = new Node[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            Coord coord = Double.isNaN(z[i]) ? new Coord(x[i], y[i]) : new Coord(x[i], y[i], z[i]);
+            Node node = factory.createNode(Id.createNodeId(strings[nodeIds[i]]), coord);
+            nodeAttributes.apply(i, node.getAttributes(), strings);
+            target.addNode(node);
+            nodes[i] = node;
+        }
+
+        List<Set<String>> modeSets = new ArrayList<>();
+        int modeSetCount = buffer.getInt();
+        for (int i = 0; i < modeSetCount; i++) {
+            int[] modes = readInts(buffer, buffer.getInt());
+            long mask = 0;
+            for (int mode : modes) {
+                mask |= ModeSets.bit(strings[mode]);
+            }
+            modeSets.add(ModeSets.of(mask));
+        }
+
+        int linkCount = buffer.getInt();
+        int[] linkIds = readInts(buffer, linkCount);
+        int[] from = readInts(buffer, linkCount);
+        int[] to = readInts(buffer, linkCount);
+        double[] length = readDoubles(buffer, linkCount);
+        double[] freespeed = readDoubles(buffer, linkCount);
+        double[] capacity = readDoubles(buffer, linkCount);
+        double[] lanes = readDoubles(buffer, linkCount);
+        int[] linkModes = readInts(buffer, linkCount);
+        AttributeColumns linkAttributes = AttributeColumns.read(buffer, linkCount);
+        for (int i = 0; i < linkCount; i++) {
+            Link link = factory.createLink(Id.createLinkId(strings[linkIds[i]]), nodes[from[i]], nodes[to[i]]);
+            link.setLength(length[i]);
+            link.setFreespeed(freespeed[i]);
+            link.setCapacity(capacity[i]);
+            link.setNumberOfLanes(lanes[i]);
+            link.setAllowedModes(modeSets.get(linkModes[i]));
+            linkAttributes.apply(i, link.getAttributes(), strings);
+            target.addLink(link);
+        }
+        return true;
+    }
+
+    private static void clear(Network network) {
+        for (Id<Node> nodeId : new ArrayList<>(network.getNodes().keySet())) {
+            network.removeNode(nodeId);
+        }
+        for (String key : new ArrayList<>(network.getAttributes().getAsMap().keySet())) {
+            network.getAttributes().removeAttribute(key);
+        }
+        network.setName(null);
+    }
+}
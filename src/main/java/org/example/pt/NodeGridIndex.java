@@ -0,0 +1,119 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Node;
+
+import java.util.Collection;
+
+/**
+ * Uniform grid over node coordinates (projected, e.g. EPSG:27700) for nearest-node lookups within a small radius.
+ *
+ * Bulk loaded: the nodes are bucketed into square cells once and stored in packed arrays (cell offsets + node
+ * indices, x/y columns), the same layout as {@link TransitStopGridIndex}. The cell size is at least the lookup
+ * radius and large enough for about one node per cell, so a lookup visits at most 3 x 3 cells and the cell table
+ * stays in the order of the number of nodes. Read-only after construction, lookups can run in parallel.
+ */
+public final class NodeGridIndex {
+
+    private final double cellSize;
+    private final double minX;
+    private final double minY;
+    private final int columns;
+    private final int rows;
+
+    private final Node[] nodes;
+    private final double[] x;
+    private final double[] y;
+    // nodes of cell c are cellNodes[cellStart[c] .. cellStart[c + 1])
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    /**
+     * @param radius the largest radius that will be queried
+     */
+    public NodeGridIndex(Collection<? extends Node> nodes, double radius) {
+        this.nodes = nodes.toArray(new Node[0]);
+        this.x = new double[this.nodes.length];
+        this.y = new double[this.nodes.length];
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < this.nodes.length; i++) {
+            Coord coord = this.nodes[i].getCoord();
+            x[i] = coord.getX();
+            y[i] = coord.getY();
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        if (this.nodes.length == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        double area = Math.max(1, (maxX - minX) * (maxY - minY));
+        this.cellSize = Math.max(Math.max(radius, 1), Math.sqrt(area / Math.max(1, this.nodes.length)));
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = (int) ((maxX - minX) / cellSize) + 1;
+        this.rows = (int) ((maxY - minY) / cellSize) + 1;
+
+        // counting sort of the nodes by cell
+        this.cellStart = new int[columns * rows + 1];
+        int[] cellOf = new int[this.nodes.length];
+        for (int i = 0; i < this.nodes.length; i++) {
+            cellOf[i] = cell(column(x[i]), row(y[i]));
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.cellNodes = new int[this.nodes.length];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < this.nodes.length; i++) {
+            cellNodes[cellStart[cellOf[i]] + fill[cellOf[i]]++] = i;
+        }
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    /** The nearest node within {@code radius} of the coordinate, null if there is none. */
+    public Node nearest(Coord coord, double radius) {
+        int best = -1;
+        double bestDistance = radius * radius;
+        int c0 = Math.max(0, column(coord.getX() - radius));
+        int c1 = Math.min(columns - 1, column(coord.getX() + radius));
+        int r0 = Math.max(0, row(coord.getY() - radius));
+        int r1 = Math.min(rows - 1, row(coord.getY() + radius));
+        for (int row = r0; row <= r1; row++) {
+            for (int column = c0; column <= c1; column++) {
+                int cell = cell(column, row);
+                for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                    int n = cellNodes[p];
+                    double dx = x[n] - coord.getX();
+                    double dy = y[n] - coord.getY();
+                    double d = dx * dx + dy * dy;
+                    // ties go to the node that comes first, so the result does not depend on the cell order
+                    if (d < bestDistance || d == bestDistance && (best < 0 || n < best)) {
+                        best = n;
+                        bestDistance = d;
+                    }
+                }
+            }
+        }
+        return best < 0 ? null : nodes[best];
+    }
+
+    private int column(double px) {
+        return (int) Math.floor((px - minX) / cellSize);
+    }
+
+    private int row(double py) {
+        return (int) Math.floor((py - minY) / cellSize);
+    }
+
+    private int cell(int column, int row) {
+        return row * columns + column;
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Index from OSM way id (the "osmID" link attribute) to the links carrying that id.
+ * - Built in a single pass over the network, the osmID attribute is parsed only once per link
+ * - Several links can share one OSM way (split ways, both directions of a two-way street),
+ *   so every key holds a small list of links
+ * - Links added to the network later can be registered with {@link #add(Link)}
+ */
+public final class OsmIdLinkIndex {
+
+    public static final String OSM_ID = "osmID";
+
+    /** Returned by {@link #osmId(Link)} if the link has no osmID attribute. */
+    public static final long NO_OSM_ID = Long.MIN_VALUE;
+
+    private final Long2ObjectOpenHashMap<List<Link>> linksByOsmId;
+
+    private OsmIdLinkIndex(int expectedSize) {
+        this.linksByOsmId = new Long2ObjectOpenHashMap<>(expectedSize);
+    }
+
+    public static OsmIdLinkIndex build(Network network) {
+        OsmIdLinkIndex index = new OsmIdLinkIndex(network.getLinks().size());
+        for (Link link : network.getLinks().values()) {
+            index.add(link);
+        }
+        return index;
+    }
+
+    /** Registers a link under its osmID, links without osmID are ignored. */
+    public void add(Link link) {
+        add(link, osmId(link));
+    }
+
+    /** Registers a link under the given osmID ({@link #NO_OSM_ID} is ignored). */
+    public void add(Link link, long osmId) {
+        if (osmId == NO_OSM_ID) {
+            return;
+        }
+        List<Link> links = linksByOsmId.get(osmId);
+        if (links == null) {
+            links = new ObjectArrayList<>(2);
+            linksByOsmId.put(osmId, links);
+        }
+        links.add(link);
+    }
+
+    /** All links sharing the given OSM way, in insertion order. */
+    public List<Link> get(long osmId) {
+        List<Link> links = linksByOsmId.get(osmId);
+        return links == null ? Collections.emptyList() : Collections.unmodifiableList(links);
+    }
+
+    /**
+     * Finds the link of the given OSM way that a link of another network runs along, with the template's end nodes
+     * already resolved to nodes {@code from} and {@code to} of the indexed network:
+     * - a link between exactly these two nodes, in the same direction, is preferred
+     * - otherwise the link in the same direction that shares the longest stretch with the template: both template end
+     *   points lie within {@code maxOffset} metres of the link's line, and the template projected onto the link
+     *   covers at least half of the shorter of the two
+     * Returns null if no link qualifies, e.g. when the way is split differently and the template lies along a part
+     * of the way that has no link here. Every segment of a split way is matched on its own position.
+     */
+    public Link findAlong(long osmId, Node from, Node to, double maxOffset) {
+        List<Link> candidates = linksByOsmId.get(osmId);
+        if (candidates == null) {
+            return null;
+        }
+
+        Link best = null;
+        double bestOverlap = 0.0;
+        for (Link candidate : candidates) {
+            if (candidate.getFromNode() == from && candidate.getToNode() == to) {
+                return candidate;
+            }
+            double overlap = overlap(candidate, from.getCoord(), to.getCoord(), maxOffset);
+            if (overlap > bestOverlap) {
+                best = candidate;
+                bestOverlap = overlap;
+            }
+        }
+        return best;
+    }
+
+    public int size() {
+        return linksByOsmId.size();
+    }
+
+    /** Parses the osmID attribute (stored as Number or String), or {@link #NO_OSM_ID} if absent. */
+    public static long osmId(Link link) {
+        Object o = link.getAttributes().getAttribute(OSM_ID);
+        if (o == null) {
+            return NO_OSM_ID;
+        }
+        return (o instanceof Number) ? ((Number) o).longValue() : Long.parseLong(o.toString());
+    }
+
+    // Length of the stretch of the link covered by the segment p → q projected onto it, 0 if the segment runs the
+    // other way, lies more than maxOffset beside the link or covers less than half of the shorter of the two
+    private static double overlap(Link link, Coord p, Coord q, double maxOffset) {
+        Coord a = link.getFromNode().getCoord();
+        Coord b = link.getToNode().getCoord();
+        double ux = b.getX() - a.getX();
+        double uy = b.getY() - a.getY();
+        double length = Math.sqrt(ux * ux + uy * uy);
+        double segment = Math.hypot(q.getX() - p.getX(), q.getY() - p.getY());
+        if (length == 0.0 || segment == 0.0) {
+            return 0.0;
+        }
+        ux /= length;
+        uy /= length;
+
+        // position along the link and distance beside it
+        double tp = (p.getX() - a.getX()) * ux + (p.getY() - a.getY()) * uy;
+        double tq = (q.getX() - a.getX()) * ux + (q.getY() - a.getY()) * uy;
+        double dp = Math.abs((p.getX() - a.getX()) * uy - (p.getY() - a.getY()) * ux);
+        double dq = Math.abs((q.getX() - a.getX()) * uy - (q.getY() - a.getY()) * ux);
+        if (tq <= tp || dp > maxOffset || dq > maxOffset) {
+            return 0.0;
+        }
+        double overlap = Math.min(length, tq) - Math.max(0.0, tp);
+        return overlap >= 0.5 * Math.min(length, segment) ? overlap : 0.0;
+    }
+}
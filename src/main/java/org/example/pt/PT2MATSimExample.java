@@ -34,13 +34,13 @@ import org.matsim.pt2matsim.config.OsmConverterConfigGroup;
 import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
 import org.matsim.pt2matsim.plausibility.PlausibilityCheck;
 import org.matsim.pt2matsim.run.*;
-import org.matsim.pt2matsim.run.gis.Network2Geojson;
-import org.matsim.pt2matsim.run.gis.Schedule2Geojson;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -66,11 +66,28 @@ public final class PT2MATSimExample {
 
     private static final String manchesterEPSG = "EPSG:27700";
 
+    // network the schedule is mapped onto (output of preparePTNetwork)
+    //private static final String mapperInputNetwork = output + "network_with_tramLinks.xml.gz";
+    private static final String mapperInputNetwork = "/mnt/usb-TOSHIBA_EXTERNAL_USB_20241114001799F-0:0-part1/manchester/pt2matsim/output/network_with_tramLinks.xml.gz";
+
+    /**
+     * Runs the steps below as an {@link IncrementalPipeline}: a step is skipped if its inputs and settings did not
+     * change since its last successful run. Pass --force to rerun everything, and --sharded to map the schedule
+     * with {@link ShardedScheduleMapper} instead of {@link PublicTransitMapper}.
+     */
     public static void main(String[] args) throws InterruptedException, ExecutionException {
         prepare();
 
+        boolean force = Arrays.asList(args).contains("--force");
+        boolean sharded = Arrays.asList(args).contains("--sharded");
+        IncrementalPipeline pipeline = new IncrementalPipeline(inter + "pipeline_manifest.properties", force);
+
         // 1. Convert a gtfs schedule to an unmapped transit schedule
-        gtfsToSchedule();
+        pipeline.step("gtfsToSchedule",
+                List.of(input + "all-modes-adjusted-gtfs.zip"),
+                List.of(inter + "schedule_unmapped.xml.gz", inter + "vehicles_unmapped.xml"),
+                "dayWithMostTrips;" + manchesterEPSG,
+                PT2MATSimExample::gtfsToSchedule);
 
         // OR a hafas schedule to an unmapped transit schedule
         // Either data format (GTFS or HAFAS/HRDF) works, GTFS feeds are more commonly available.
@@ -88,13 +105,42 @@ public final class PT2MATSimExample {
         // Osm2MultimodalNetwork.main(new String[]{ inter + "OsmConverterConfig.xml" });
 
         // 3. Map the schedule onto the network
-        // create a config file (or adjust an existing one by hand)
-        createMapperConfigFile(inter + "MapperConfigAdjusted.xml");
+        // create a config file (or adjust an existing one by hand), cheap → always rewritten, the mapping step
+        // below hashes it, so changed mapper settings invalidate the mapping; the thread count is machine dependent
+        // and set only when mapping, so it does not invalidate the mapping
+        pipeline.alwaysStep("createMapperConfig", () -> createMapperConfigFile(inter + "MapperConfigAdjusted.xml"));
         // Map the schedule using the config
-        PublicTransitMapper.main(new String[]{inter + "MapperConfigAdjusted.xml"});
+        pipeline.step("mapSchedule",
+                List.of(inter + "MapperConfigAdjusted.xml", mapperInputNetwork, inter + "schedule_unmapped.xml.gz"),
+                List.of(output + "multimodal_network.xml.gz", output + "manchester_schedule.xml.gz"),
+                sharded ? "sharded" : "",
+                () -> {
+                    if (sharded) {
+                        // bus, tram and rail shards mapped concurrently
+                        ShardedScheduleMapper.run(inter + "MapperConfigAdjusted.xml", ShardedScheduleMapper.DEFAULT_SHARDS.size());
+                    } else {
+                        String runtimeConfig = inter + "MapperConfigRuntime.xml";
+                        writeMapperConfigWithThreads(inter + "MapperConfigAdjusted.xml", runtimeConfig);
+                        PublicTransitMapper.main(new String[]{runtimeConfig});
+                    }
+                });
 
         // 4. Do a plausibility check
-        checkPlausibility2();
+        pipeline.step("checkPlausibility",
+                List.of(output + "manchester_schedule.xml.gz", output + "multimodal_network.xml.gz"),
+                List.of(output + "plausibilityResults/allPlausibilityWarnings.csv",
+                        output + "plausibilityResults/parallelPlausibilityWarnings.csv"),
+                "pt2matsim+parallel;" + manchesterEPSG,
+                PT2MATSimExample::checkPlausibilityParallel);
+
+        // 5. Network and mapped schedule as tiled GeoJSON for viewing
+        pipeline.step("exportTiles",
+                List.of(output + "manchester_schedule.xml.gz", output + "multimodal_network.xml.gz"),
+                List.of(output + "plausibilityResults/tiles/index.json"),
+                manchesterEPSG + ";" + TiledGeojsonExporter.DEFAULT_TILE_SIZE,
+                PT2MATSimExample::exportTiles);
+
+        pipeline.run();
     }
 
     /** Create output folder if not existing **/
@@ -210,8 +256,7 @@ public final class PT2MATSimExample {
 
         PublicTransitMappingConfigGroup ptmConfig = ConfigUtils.addOrGetModule(config, PublicTransitMappingConfigGroup.class);
 
-        //ptmConfig.setInputNetworkFile(output + "network_with_tramLinks.xml.gz");
-        ptmConfig.setInputNetworkFile("/mnt/usb-TOSHIBA_EXTERNAL_USB_20241114001799F-0:0-part1/manchester/pt2matsim/output/network_with_tramLinks.xml.gz");
+        ptmConfig.setInputNetworkFile(mapperInputNetwork);
         ptmConfig.setOutputNetworkFile(output + "multimodal_network.xml.gz");
         ptmConfig.setOutputScheduleFile(output+ "manchester_schedule.xml.gz");
         ptmConfig.setOutputStreetNetworkFile(output + "multimodal_streetnetwork.xml.gz");
@@ -224,14 +269,23 @@ public final class PT2MATSimExample {
 
         ptmConfig.setModesToKeepOnCleanUp(CollectionUtils.stringToSet("car,walk,bike,truck"));
 
-        int maxThreads = Math.min(Runtime.getRuntime().availableProcessors(), 20); // Cap at 16
-        ptmConfig.setNumOfThreads(maxThreads);
-
         // Save the mapping config
         // (usually done manually)
         new ConfigWriter(config).write(configFile);
     }
 
+    /**
+     * Copy of the mapper config with the number of threads of this machine. The thread count does not change the
+     * mapping result, so it is kept out of the config the pipeline hashes.
+     */
+    private static void writeMapperConfigWithThreads(String configFile, String runtimeConfigFile) {
+        Config config = ConfigUtils.loadConfig(configFile, PublicTransitMappingConfigGroup.createDefaultConfig());
+        PublicTransitMappingConfigGroup ptmConfig = ConfigUtils.addOrGetModule(config, PublicTransitMappingConfigGroup.class);
+        int maxThreads = Math.min(Runtime.getRuntime().availableProcessors(), 20); // Cap at 16
+        ptmConfig.setNumOfThreads(maxThreads);
+        new ConfigWriter(config).write(runtimeConfigFile);
+    }
+
     /**
      * 	4. The PT2MATSim package provides a plausibility checker to get quick feedback on the mapping process.
      *
@@ -266,14 +320,73 @@ public final class PT2MATSimExample {
         check.writeCsv(resultFolder + "allPlausibilityWarnings.csv");  // ← perfect CSV, no error
         check.printStatisticsLog();                                     // ← prints the nice summary with artificial links, loops, etc.
 
-        // Optional but nice: network as GeoJSON (this one works without any problem)
-        Network2Geojson.run(crs, network, resultFolder + "network.geojson");
-
         System.out.println("================================================================");
         System.out.println("Plausibility check finished perfectly – no Jackson errors anymore!");
         System.out.println("CSV warnings  : " + resultFolder + "allPlausibilityWarnings.csv");
-        System.out.println("Network GeoJSON: " + resultFolder + "network.geojson");
         System.out.println("================================================================");
     }
 
+    /**
+     * Runs pt2matsim's plausibility check as in {@link #checkPlausibility2()} (allPlausibilityWarnings.csv and its
+     * statistics log) and adds the parallel check on the same schedule and network. The parallel check has its own
+     * columns, so it is written as parallelPlausibilityWarnings.csv, together with a GeoJSON of the warning links.
+     */
+    public static void checkPlausibilityParallel() {
+        String scheduleFile = output + "manchester_schedule.xml.gz";
+        String networkFile  = output + "multimodal_network.xml.gz";
+        String resultFolder = output + "plausibilityResults/";
+
+        new java.io.File(resultFolder).mkdirs();
+
+        TransitSchedule[] schedule = new TransitSchedule[1];
+        Network[] network = new Network[1];
+        ParallelInputLoader.runAll(List.<Callable<Void>>of(
+                () -> {
+                    schedule[0] = ScheduleTools.readTransitSchedule(scheduleFile);
+                    return null;
+                },
+                () -> {
+                    network[0] = NetworkSnapshot.readNetwork(networkFile);
+                    return null;
+                }));
+
+        PlausibilityCheck pt2matsimCheck = new PlausibilityCheck(schedule[0], network[0], manchesterEPSG);
+        pt2matsimCheck.runCheck();
+        pt2matsimCheck.writeCsv(resultFolder + "allPlausibilityWarnings.csv");
+        pt2matsimCheck.printStatisticsLog();
+
+        ParallelPlausibilityCheck check = new ParallelPlausibilityCheck(schedule[0], network[0]);
+        check.run(resultFolder + "parallelPlausibilityWarnings.csv");
+        check.printStatistics();
+        check.writeWarningLinksGeojson(manchesterEPSG, resultFolder + "warningLinks.geojson");
+
+        System.out.println("CSV warnings         : " + resultFolder + "allPlausibilityWarnings.csv");
+        System.out.println("Parallel CSV warnings: " + resultFolder + "parallelPlausibilityWarnings.csv");
+        System.out.println("Warning links GeoJSON: " + resultFolder + "warningLinks.geojson");
+    }
+
+    /**
+     * Network and mapped schedule as tiled GeoJSON (one file per 5 km tile, see tiles/index.json); a single GeoJSON
+     * of the whole multimodal network is too large to open.
+     */
+    public static void exportTiles() {
+        String resultFolder = output + "plausibilityResults/";
+
+        TransitSchedule[] schedule = new TransitSchedule[1];
+        Network[] network = new Network[1];
+        ParallelInputLoader.runAll(List.<Callable<Void>>of(
+                () -> {
+                    schedule[0] = ScheduleTools.readTransitSchedule(output + "manchester_schedule.xml.gz");
+                    return null;
+                },
+                () -> {
+                    network[0] = NetworkSnapshot.readNetwork(output + "multimodal_network.xml.gz");
+                    return null;
+                }));
+
+        new TiledGeojsonExporter(manchesterEPSG, TiledGeojsonExporter.DEFAULT_TILE_SIZE)
+                .write(network[0], schedule[0], resultFolder + "tiles/");
+        System.out.println("GeoJSON tiles: " + resultFolder + "tiles/index.json");
+    }
+
 }
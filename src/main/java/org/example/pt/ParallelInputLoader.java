@@ -0,0 +1,146 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.vehicles.MatsimVehicleReader;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads independent input files (networks, transit schedule, transit vehicles, population) on separate threads.
+ * Each file is decompressed and parsed on its own thread, the methods return once all inputs are loaded.
+ * Local network and transit schedule files go through {@link NetworkSnapshot} and {@link TransitScheduleSnapshot},
+ * so a valid binary snapshot is used instead of the XML; local gzip files are decompressed with {@link BlockGzip}.
+ *
+ * Note: MATSim ids are created in the order the parsers reach them, so with concurrent loading the internal id
+ * indices (and with that the iteration order of id-keyed maps) can differ from a sequential load.
+ */
+public final class ParallelInputLoader {
+
+    private ParallelInputLoader() {
+    }
+
+    /** Reads the given network files concurrently, networks are returned in the order of the files. */
+    public static Network[] readNetworks(String... files) {
+        Network[] networks = new Network[files.length];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < files.length; i++) {
+            Network network = NetworkUtils.createNetwork();
+            String file = files[i];
+            networks[i] = network;
+            tasks.add(() -> {
+                NetworkSnapshot.read(file, network);
+                return null;
+            });
+        }
+        runAll(tasks);
+        return networks;
+    }
+
+    /**
+     * Replacement for {@link ScenarioUtils#loadScenario(Config)} covering the inputs this project uses:
+     * network, transit schedule, transit vehicles and population are read concurrently.
+     */
+    public static Scenario loadScenario(Config config) {
+        Scenario scenario = ScenarioUtils.createScenario(config);
+        List<Callable<Void>> tasks = new ArrayList<>();
+
+        String networkFile = config.network().getInputFile();
+        if (networkFile != null) {
+            tasks.add(() -> {
+                URL url = ConfigGroup.getInputFileURL(config.getContext(), networkFile);
+                if ("file".equals(url.getProtocol())) {
+                    NetworkSnapshot.read(Path.of(url.toURI()).toString(), scenario.getNetwork());
+                } else {
+                    new MatsimNetworkReader(scenario.getNetwork()).readURL(url);
+                }
+                return null;
+            });
+        }
+
+        String scheduleFile = config.transit().getTransitScheduleFile();
+        if (config.transit().isUseTransit() && scheduleFile != null) {
+            tasks.add(() -> {
+                URL url = ConfigGroup.getInputFileURL(config.getContext(), scheduleFile);
+                if ("file".equals(url.getProtocol())) {
+                    String mappedNetwork = null;
+                    if (networkFile != null) {
+                        URL networkUrl = ConfigGroup.getInputFileURL(config.getContext(), networkFile);
+                        mappedNetwork = "file".equals(networkUrl.getProtocol()) ? Path.of(networkUrl.toURI()).toString() : null;
+                    }
+                    TransitScheduleSnapshot.read(Path.of(url.toURI()).toString(), mappedNetwork, scenario);
+                } else {
+                    new TransitScheduleReader(scenario).readURL(url);
+                }
+                return null;
+            });
+        }
+
+        String vehiclesFile = config.transit().getVehiclesFile();
+        if (config.transit().isUseTransit() && vehiclesFile != null) {
+            tasks.add(() -> {
+                new MatsimVehicleReader(scenario.getTransitVehicles()).readURL(ConfigGroup.getInputFileURL(config.getContext(), vehiclesFile));
+                return null;
+            });
+        }
+
+        String plansFile = config.plans().getInputFile();
+        if (plansFile != null) {
+            tasks.add(() -> {
+                URL url = ConfigGroup.getInputFileURL(config.getContext(), plansFile);
+                if ("file".equals(url.getProtocol())) {
+                    BlockGzip.readPopulation(Path.of(url.toURI()).toString(), scenario);
+                } else {
+                    new PopulationReader(scenario).readURL(url);
+                }
+                return null;
+            });
+        }
+
+        runAll(tasks);
+        return scenario;
+    }
+
+    // Runs all tasks on their own thread and waits for all of them, the first failure is rethrown
+    static void runAll(List<? extends Callable<?>> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size(), r -> {
+            Thread thread = new Thread(r, "input-loader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Callable<?> task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading inputs", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not load input: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
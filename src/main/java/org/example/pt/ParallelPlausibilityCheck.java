@@ -0,0 +1,287 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt2matsim.run.gis.Network2Geojson;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Plausibility check of a mapped schedule that checks transit routes in parallel, complements pt2matsim's
+ * {@code PlausibilityCheck} with its own CSV and a GeoJSON of the links with warnings.
+ * - LOOP: a route passes the same link more than once
+ * - DIRECTION_CHANGE: the angle between two consecutive links exceeds the threshold of the route's mode
+ * - TRAVEL_TIME: the free speed travel time between two stops exceeds the scheduled time by more than the tolerance
+ * Only the ids of links with warnings are kept, so the GeoJSON export can be restricted to those links.
+ * Rows are sorted by transit line, transit route, from link, to link and type before writing, so repeated runs on
+ * the same input give the same file.
+ */
+public final class ParallelPlausibilityCheck {
+
+    public enum WarningType {LOOP, DIRECTION_CHANGE, TRAVEL_TIME}
+
+    private static final double DEFAULT_DIRECTION_CHANGE_THRESHOLD = 2.0 / 3.0 * Math.PI;
+
+    private final TransitSchedule schedule;
+    private final Network network;
+
+    private final Map<String, Double> directionChangeThresholds = new HashMap<>();
+    private double travelTimeTolerance = 60.0;
+
+    private final Set<Id<Link>> warningLinks = ConcurrentHashMap.newKeySet();
+    private final Map<WarningType, LongAdder> warningCounts = new EnumMap<>(WarningType.class);
+
+    public ParallelPlausibilityCheck(TransitSchedule schedule, Network network) {
+        this.schedule = schedule;
+        this.network = network;
+        for (WarningType type : WarningType.values()) {
+            warningCounts.put(type, new LongAdder());
+        }
+        // rail vehicles cannot take sharp turns
+        directionChangeThresholds.put("rail", Math.PI / 4.0);
+        directionChangeThresholds.put("light_rail", Math.PI / 4.0);
+        directionChangeThresholds.put("subway", Math.PI / 4.0);
+    }
+
+    /** Maximum angle (radians) between consecutive links for routes of the given mode. */
+    public void setDirectionChangeThreshold(String mode, double radians) {
+        directionChangeThresholds.put(mode, radians);
+    }
+
+    /** Seconds the network travel time between two stops may exceed the scheduled time. */
+    public void setTravelTimeTolerance(double seconds) {
+        this.travelTimeTolerance = seconds;
+    }
+
+    /** Checks all routes in parallel, then writes the sorted warnings to the CSV file. */
+    public void run(String csvFile) {
+        List<TransitRoute> routes = new ArrayList<>();
+        List<TransitLine> routeLines = new ArrayList<>();
+        for (TransitLine line : schedule.getTransitLines().values()) {
+            for (TransitRoute route : line.getRoutes().values()) {
+                routes.add(route);
+                routeLines.add(line);
+            }
+        }
+
+        List<Row> rows = IntStream.range(0, routes.size()).parallel()
+                .mapToObj(i -> {
+                    List<Row> warnings = new ArrayList<>();
+                    check(routeLines.get(i), routes.get(i), warnings);
+                    return warnings;
+                })
+                .flatMap(List::stream)
+                .sorted(ROW_ORDER)
+                .toList();
+
+        try (BufferedWriter writer = IOUtils.getBufferedWriter(csvFile)) {
+            writer.write("type,transitLine,transitRoute,fromLink,toLink,expected,actual,difference");
+            writer.newLine();
+            for (Row row : rows) {
+                writer.write(row.csv());
+                writer.newLine();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write plausibility warnings to " + csvFile, e);
+        }
+    }
+
+    public Set<Id<Link>> getWarningLinks() {
+        return warningLinks;
+    }
+
+    public long getWarningCount(WarningType type) {
+        return warningCounts.get(type).sum();
+    }
+
+    public void printStatistics() {
+        System.out.println("Plausibility warnings:");
+        for (WarningType type : WarningType.values()) {
+            System.out.println("   " + type + ": " + getWarningCount(type));
+        }
+        System.out.println("   Links with warnings: " + warningLinks.size());
+    }
+
+    /** Writes only the links with warnings (and their nodes) as GeoJSON. */
+    public void writeWarningLinksGeojson(String crs, String geojsonFile) {
+        Network warningNetwork = NetworkUtils.createNetwork();
+        List<Id<Link>> linkIds = new ArrayList<>(warningLinks);
+        linkIds.sort(Comparator.comparing(Id::toString));
+        for (Id<Link> linkId : linkIds) {
+            Link link = network.getLinks().get(linkId);
+            if (link == null) {
+                continue;
+            }
+            Node from = copyNode(link.getFromNode(), warningNetwork);
+            Node to = copyNode(link.getToNode(), warningNetwork);
+            Link copy = warningNetwork.getFactory().createLink(link.getId(), from, to);
+            copy.setLength(link.getLength());
+            copy.setFreespeed(link.getFreespeed());
+            copy.setCapacity(link.getCapacity());
+            copy.setNumberOfLanes(link.getNumberOfLanes());
+            copy.setAllowedModes(link.getAllowedModes());
+            warningNetwork.addLink(copy);
+        }
+        Network2Geojson.run(crs, warningNetwork, geojsonFile);
+    }
+
+    // ---------------------------------------------------------------- checks
+
+    private record Row(String line, String route, String from, String to, WarningType type, String csv) {
+    }
+
+    private static final Comparator<Row> ROW_ORDER = Comparator.comparing(Row::line)
+            .thenComparing(Row::route)
+            .thenComparing(Row::from)
+            .thenComparing(Row::to)
+            .thenComparing(Row::type);
+
+    private void check(TransitLine line, TransitRoute route, List<Row> out) {
+        NetworkRoute networkRoute = route.getRoute();
+        if (networkRoute == null) {
+            return;
+        }
+        List<Id<Link>> linkIds = new ArrayList<>(networkRoute.getLinkIds().size() + 2);
+        linkIds.add(networkRoute.getStartLinkId());
+        linkIds.addAll(networkRoute.getLinkIds());
+        linkIds.add(networkRoute.getEndLinkId());
+
+        // loops
+        Set<Id<Link>> seen = new HashSet<>();
+        for (Id<Link> linkId : linkIds) {
+            if (!seen.add(linkId)) {
+                warn(WarningType.LOOP, line, route, linkId, linkId, Double.NaN, Double.NaN, out);
+            }
+        }
+
+        // direction changes
+        double threshold = directionChangeThresholds.getOrDefault(route.getTransportMode(), DEFAULT_DIRECTION_CHANGE_THRESHOLD);
+        for (int i = 1; i < linkIds.size(); i++) {
+            Link previous = network.getLinks().get(linkIds.get(i - 1));
+            Link current = network.getLinks().get(linkIds.get(i));
+            if (previous == null || current == null) {
+                continue;
+            }
+            double angle = angle(previous, current);
+            if (angle > threshold) {
+                warn(WarningType.DIRECTION_CHANGE, line, route, previous.getId(), current.getId(), threshold, angle, out);
+            }
+        }
+
+        // travel times between consecutive stops
+        List<TransitRouteStop> stops = route.getStops();
+        int linkIndex = 0;
+        for (int s = 1; s < stops.size(); s++) {
+            TransitRouteStop fromStop = stops.get(s - 1);
+            TransitRouteStop toStop = stops.get(s);
+            Id<Link> fromLinkId = fromStop.getStopFacility().getLinkId();
+            Id<Link> toLinkId = toStop.getStopFacility().getLinkId();
+
+            // search from the previous stop on, a route can pass a link more than once
+            int start = indexOf(linkIds, fromLinkId, linkIndex);
+            if (start == -1) {
+                continue; // stop link not on the route, the next pair may still be comparable
+            }
+            linkIndex = start;
+            if (toLinkId.equals(fromLinkId)) {
+                continue; // both stops on the same link, no network time between them
+            }
+            int end = indexOf(linkIds, toLinkId, start + 1);
+            if (end == -1) {
+                continue;
+            }
+            double networkTime = 0.0;
+            for (int i = start + 1; i <= end; i++) {
+                networkTime += freespeedTravelTime(linkIds.get(i));
+            }
+            linkIndex = end;
+
+            double scheduled = offset(toStop.getArrivalOffset(), toStop.getDepartureOffset())
+                    - offset(fromStop.getDepartureOffset(), fromStop.getArrivalOffset());
+            if (networkTime > scheduled + travelTimeTolerance) {
+                warn(WarningType.TRAVEL_TIME, line, route, fromLinkId, toLinkId, scheduled, networkTime, out);
+                for (int i = start; i <= end; i++) {
+                    warningLinks.add(linkIds.get(i));
+                }
+            }
+        }
+    }
+
+    private void warn(WarningType type, TransitLine line, TransitRoute route, Id<Link> from, Id<Link> to,
+                      double expected, double actual, List<Row> out) {
+        warningCounts.get(type).increment();
+        warningLinks.add(from);
+        warningLinks.add(to);
+        String csv = type + "," + line.getId() + "," + route.getId() + "," + from + "," + to + ","
+                + (Double.isNaN(expected) ? "" : expected) + ","
+                + (Double.isNaN(actual) ? "" : actual) + ","
+                + (Double.isNaN(expected) ? "" : actual - expected);
+        out.add(new Row(line.getId().toString(), route.getId().toString(), from.toString(), to.toString(), type, csv));
+    }
+
+    private static int indexOf(List<Id<Link>> linkIds, Id<Link> linkId, int from) {
+        for (int i = from; i < linkIds.size(); i++) {
+            if (linkIds.get(i).equals(linkId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private double freespeedTravelTime(Id<Link> linkId) {
+        Link link = network.getLinks().get(linkId);
+        return link == null ? 0.0 : link.getLength() / link.getFreespeed();
+    }
+
+    // angle (radians, 0..π) between the directions of two links
+    private static double angle(Link a, Link b) {
+        Coord aFrom = a.getFromNode().getCoord();
+        Coord aTo = a.getToNode().getCoord();
+        Coord bFrom = b.getFromNode().getCoord();
+        Coord bTo = b.getToNode().getCoord();
+        double angleA = Math.atan2(aTo.getY() - aFrom.getY(), aTo.getX() - aFrom.getX());
+        double angleB = Math.atan2(bTo.getY() - bFrom.getY(), bTo.getX() - bFrom.getX());
+        double diff = Math.abs(angleB - angleA);
+        return diff > Math.PI ? 2 * Math.PI - diff : diff;
+    }
+
+    private static double offset(OptionalTime preferred, OptionalTime fallback) {
+        if (preferred.isDefined()) {
+            return preferred.seconds();
+        }
+        return fallback.isDefined() ? fallback.seconds() : 0.0;
+    }
+
+    private static Node copyNode(Node node, Network target) {
+        Node copy = target.getNodes().get(node.getId());
+        if (copy == null) {
+            copy = target.getFactory().createNode(node.getId(), node.getCoord());
+            target.addNode(copy);
+        }
+        return copy;
+    }
+}
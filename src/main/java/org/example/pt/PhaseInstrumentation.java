@@ -0,0 +1,220 @@
+package org.example.pt;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.sun.management.OperatingSystemMXBean;
+import com.sun.management.ThreadMXBean;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.events.IterationEndsEvent;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.events.ShutdownEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.controler.listener.IterationEndsListener;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
+import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimBeforeCleanupListener;
+import org.matsim.core.mobsim.framework.listeners.MobsimInitializedListener;
+import org.matsim.core.utils.io.IOUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Measures every phase of every iteration and reports it as JFR event ({@link PhaseEvent}) and as a line in
+ * {@code phase_timings.csv} in the output directory. Install with {@link PhaseInstrumentationModule}.
+ *
+ * Phases are bounded by controller and mobsim listener callbacks:
+ * - replanning: iteration start until before mobsim (replanning strategies, e.g. ReRoute)
+ * - planWriting: before mobsim until the mobsim is initialized (plans dump, QSim setup)
+ * - qsim: the mobsim run
+ * - mobsimCleanup: mobsim cleanup until after mobsim (QSim cleanup, e.g. vehicles and agents still en route)
+ * - afterMobsim: after mobsim until iteration end (draining the events manager in finishProcessing, scoring and
+ *   the remaining after-mobsim listeners; no callback separates the drain from scoring)
+ * - iterationEnd: iteration end until the next iteration starts or the run shuts down (closing the event writers,
+ *   analysis, outputs)
+ * Listeners of the same callback may run before or after this one, so boundaries are accurate to one listener.
+ *
+ * Measured per phase: wall time, process CPU time (all threads), bytes allocated on the heap (all threads) and
+ * garbage collection time and count.
+ */
+@Singleton
+public final class PhaseInstrumentation implements IterationStartsListener, BeforeMobsimListener, AfterMobsimListener,
+        IterationEndsListener, ShutdownListener, MobsimInitializedListener, MobsimBeforeCleanupListener {
+
+    public static final String FILE = "phase_timings.csv";
+
+    @Name("org.example.pt.Phase")
+    @Label("Controller Phase")
+    @Category({"MATSim", "Controller"})
+    @Description("One phase of a MATSim iteration")
+    static final class PhaseEvent extends Event {
+        @Label("Iteration")
+        int iteration;
+
+        @Label("Phase")
+        String phase;
+
+        @Label("CPU Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long cpuTime;
+
+        @Label("Allocated")
+        @DataAmount
+        long allocated;
+
+        @Label("GC Time")
+        @Timespan(Timespan.MILLISECONDS)
+        long gcTime;
+
+        @Label("GC Count")
+        long gcCount;
+    }
+
+    private record Sample(long wallNanos, long cpuNanos, long allocatedBytes, long gcMillis, long gcCount) {
+    }
+
+    private final OutputDirectoryHierarchy outputDirectory;
+    private final OperatingSystemMXBean os = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+    private final ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private BufferedWriter writer;
+    private int iteration;
+    private String phase;
+    private Sample start;
+    private PhaseEvent event;
+
+    @Inject
+    PhaseInstrumentation(OutputDirectoryHierarchy outputDirectory) {
+        this.outputDirectory = outputDirectory;
+    }
+
+    @Override
+    public void notifyIterationStarts(IterationStartsEvent e) {
+        iteration = e.getIteration();
+        begin("replanning");
+    }
+
+    @Override
+    public void notifyBeforeMobsim(BeforeMobsimEvent e) {
+        begin("planWriting");
+    }
+
+    @Override
+    public void notifyMobsimInitialized(MobsimInitializedEvent e) {
+        begin("qsim");
+    }
+
+    @Override
+    public void notifyMobsimBeforeCleanup(MobsimBeforeCleanupEvent e) {
+        begin("mobsimCleanup");
+    }
+
+    @Override
+    public void notifyAfterMobsim(AfterMobsimEvent e) {
+        begin("afterMobsim");
+    }
+
+    @Override
+    public void notifyIterationEnds(IterationEndsEvent e) {
+        begin("iterationEnd");
+        flush();
+    }
+
+    @Override
+    public void notifyShutdown(ShutdownEvent e) {
+        end();
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                throw new UncheckedIOException("Could not write " + FILE, ex);
+            }
+            writer = null;
+        }
+    }
+
+    // ends the current phase (if any) and starts the next one
+    private void begin(String nextPhase) {
+        end();
+        phase = nextPhase;
+        event = new PhaseEvent();
+        event.begin();
+        start = sample();
+    }
+
+    private void end() {
+        if (phase == null) {
+            return;
+        }
+        Sample now = sample();
+        long wall = now.wallNanos() - start.wallNanos();
+        long cpu = now.cpuNanos() - start.cpuNanos();
+        long allocated = now.allocatedBytes() - start.allocatedBytes();
+        long gcTime = now.gcMillis() - start.gcMillis();
+        long gcCount = now.gcCount() - start.gcCount();
+
+        event.iteration = iteration;
+        event.phase = phase;
+        event.cpuTime = cpu;
+        event.allocated = allocated;
+        event.gcTime = gcTime;
+        event.gcCount = gcCount;
+        event.commit();
+
+        double seconds = wall / 1e9;
+        write(iteration + ";" + phase + ";" + wall / 1_000_000 + ";" + cpu / 1_000_000 + ";" + allocated + ";"
+                + (seconds > 0 ? Math.round(allocated / seconds) : 0) + ";" + gcTime + ";" + gcCount);
+        phase = null;
+    }
+
+    private Sample sample() {
+        long gcMillis = 0;
+        long gcCount = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcMillis += Math.max(0, collector.getCollectionTime());
+            gcCount += Math.max(0, collector.getCollectionCount());
+        }
+        return new Sample(System.nanoTime(), os.getProcessCpuTime(), threads.getTotalThreadAllocatedBytes(), gcMillis, gcCount);
+    }
+
+    private void write(String line) {
+        try {
+            if (writer == null) {
+                writer = IOUtils.getBufferedWriter(outputDirectory.getOutputFilename(FILE));
+                writer.write("iteration;phase;wall_ms;cpu_ms;allocated_bytes;allocation_rate_bytes_per_s;gc_ms;gc_count");
+                writer.newLine();
+            }
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + FILE, e);
+        }
+    }
+
+    private void flush() {
+        try {
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + FILE, e);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package org.example.pt;
+
+import org.matsim.core.controler.AbstractModule;
+
+/**
+ * Installs {@link PhaseInstrumentation}: per-phase timings as JFR events and phase_timings.csv.
+ *
+ * controller.addOverridingModule(new PhaseInstrumentationModule());
+ */
+public final class PhaseInstrumentationModule extends AbstractModule {
+
+    @Override
+    public void install() {
+        bind(PhaseInstrumentation.class);
+        addControlerListenerBinding().to(PhaseInstrumentation.class);
+        addMobsimListenerBinding().to(PhaseInstrumentation.class);
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Constant-speed travel times for one network mode (walk, bike, ...), precomputed per speed class.
+ *
+ * Travel times are kept in one {@code double[]} per speed class, indexed by the link id index, and every person's
+ * speed class in a {@code byte[]} indexed by the person id index. A router call is two array reads and does not
+ * allocate. The speed class of a person is taken from the person attribute {@code <mode>SpeedClass}
+ * (e.g. {@code bikeSpeedClass = ebike}); persons without it, or with an unknown class, use the default speed.
+ *
+ * Links added to the network afterwards fall back to length / speed.
+ */
+public final class PrecomputedTravelTime implements TravelTime {
+
+    public static final String DEFAULT_CLASS = "default";
+
+    private final String attributeName;
+    private final String[] classNames;
+    private final double[] speeds;
+    private final double[][] travelTimes;
+    private final byte[] personClasses;
+
+    /**
+     * @param population   persons whose speed class is resolved up front, may be null
+     * @param defaultSpeed speed in m/s of persons without a speed class
+     * @param classSpeeds  speed in m/s per speed class name, at most 127 classes
+     */
+    public PrecomputedTravelTime(Network network, Population population, String mode, double defaultSpeed,
+                                 Map<String, Double> classSpeeds) {
+        Map<String, Double> classes = new LinkedHashMap<>();
+        classes.put(DEFAULT_CLASS, defaultSpeed);
+        classes.putAll(classSpeeds);
+        if (classes.size() > Byte.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many speed classes for mode " + mode + ": " + classes.size());
+        }
+
+        this.attributeName = speedClassAttribute(mode);
+        this.classNames = classes.keySet().toArray(new String[0]);
+        this.speeds = new double[classNames.length];
+        for (int c = 0; c < classNames.length; c++) {
+            speeds[c] = classes.get(classNames[c]);
+            if (!(speeds[c] > 0)) {
+                throw new IllegalArgumentException("Speed of class " + classNames[c] + " must be positive");
+            }
+        }
+
+        int numberOfLinks = Id.getNumberOfIds(Link.class);
+        this.travelTimes = new double[classNames.length][numberOfLinks];
+        for (double[] times : travelTimes) {
+            Arrays.fill(times, Double.NaN);
+        }
+        for (Link link : network.getLinks().values()) {
+            int index = link.getId().index();
+            for (int c = 0; c < classNames.length; c++) {
+                travelTimes[c][index] = link.getLength() / speeds[c];
+            }
+        }
+
+        this.personClasses = new byte[population == null ? 0 : Id.getNumberOfIds(Person.class)];
+        if (population != null) {
+            for (Person person : population.getPersons().values()) {
+                personClasses[person.getId().index()] = (byte) resolveClass(person);
+            }
+        }
+    }
+
+    /**
+     * Parses speed classes given as {@code name:speed,name:speed} (m/s), e.g. {@code senior:1.1,child:1.2};
+     * null or blank for none.
+     */
+    public static Map<String, Double> parseClassSpeeds(String spec) {
+        Map<String, Double> classSpeeds = new LinkedHashMap<>();
+        if (spec == null) {
+            return classSpeeds;
+        }
+        for (String part : spec.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] nameSpeed = part.split(":", 2);
+            if (nameSpeed.length != 2) {
+                throw new IllegalArgumentException("Expected name:speed, got " + part);
+            }
+            classSpeeds.put(nameSpeed[0].trim(), Double.parseDouble(nameSpeed[1].trim()));
+        }
+        return classSpeeds;
+    }
+
+    /** Name of the person attribute holding the speed class for the given mode. */
+    public static String speedClassAttribute(String mode) {
+        return mode + "SpeedClass";
+    }
+
+    @Override
+    public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+        int speedClass = speedClass(person);
+        int index = link.getId().index();
+        double[] times = travelTimes[speedClass];
+        if (index < times.length) {
+            double travelTime = times[index];
+            if (!Double.isNaN(travelTime)) {
+                return travelTime;
+            }
+        }
+        return link.getLength() / speeds[speedClass];
+    }
+
+    private int speedClass(Person person) {
+        if (person == null) {
+            return 0;
+        }
+        int index = person.getId().index();
+        if (index < personClasses.length) {
+            return personClasses[index];
+        }
+        return resolveClass(person); // person created after construction
+    }
+
+    private int resolveClass(Person person) {
+        Object value = person.getAttributes().getAttribute(attributeName);
+        if (value == null) {
+            return 0;
+        }
+        String name = value.toString();
+        for (int c = 1; c < classNames.length; c++) {
+            if (classNames[c].equals(name)) {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
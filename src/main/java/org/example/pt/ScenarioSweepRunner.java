@@ -0,0 +1,254 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigGroup;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.pt.utils.CreateVehiclesForSchedule;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs several variants of the simulatePT scenario concurrently in one JVM.
+ *
+ * Network, transit schedule and transit vehicles are loaded once and shared by all variants; they are only read
+ * during a run. Every variant gets its own config (simulatePT's config plus the variant's overrides), population,
+ * output directory and controller, so everything a run changes (plans, scores, vehicles, router and mobsim state) is
+ * per variant. The SwissRailRaptorData is not shared either: every controller builds its own from the shared
+ * schedule, since it depends on the raptor settings a variant may override.
+ *
+ * Variants file: one variant per line, {@code name;module.param=value;module.param=value...}, e.g.
+ * {@code short;controller.lastIteration=1;qsim.flowCapacityFactor=0.5}. Parameters of parameter sets are addressed
+ * with the set type and either its position or a parameter identifying it, e.g.
+ * {@code swissRailRaptor.intermodalAccessEgress[mode=walk].maxRadius=800} or
+ * {@code swissRailRaptor.intermodalAccessEgress[1].initialSearchRadius=3000}. Empty lines and lines starting with #
+ * are ignored. The shared inputs (network, schedule, vehicles files) cannot be overridden.
+ *
+ * Caveats with more than one variant in parallel:
+ * - MatsimRandom is static, so concurrent variants draw from one random stream and runs are not reproducible
+ * - the log files in the output directories contain the lines of all concurrently running variants
+ * - allocation numbers in phase_timings.csv are JVM-wide
+ */
+public final class ScenarioSweepRunner {
+
+    /** A named set of {@code module[.set[selector]].param} overrides applied on top of simulatePT's config. */
+    public record Variant(String name, Map<String, String> overrides) {
+
+        public Variant {
+            Objects.requireNonNull(name);
+            overrides = Map.copyOf(overrides);
+        }
+
+        void apply(Config config) {
+            for (Map.Entry<String, String> override : overrides.entrySet()) {
+                String key = override.getKey();
+                int dot = key.indexOf('.');
+                if (dot <= 0) {
+                    throw new IllegalArgumentException("Variant " + name + ": expected module.param, got " + key);
+                }
+                ConfigGroup group = config.getModules().get(key.substring(0, dot));
+                if (group == null) {
+                    throw new IllegalArgumentException("Variant " + name + ": unknown config module in " + key);
+                }
+                String[] path = key.substring(dot + 1).split("\\.(?![^\\[]*\\])");
+                for (int i = 0; i < path.length - 1; i++) {
+                    group = parameterSet(group, path[i], key);
+                }
+                group.addParam(path[path.length - 1], override.getValue());
+            }
+        }
+
+        // the parameter set addressed by type[index] or type[param=value]
+        private ConfigGroup parameterSet(ConfigGroup group, String segment, String key) {
+            int open = segment.indexOf('[');
+            if (open <= 0 || !segment.endsWith("]")) {
+                throw new IllegalArgumentException("Variant " + name + ": expected set[index] or set[param=value] in " + key);
+            }
+            List<ConfigGroup> sets = new ArrayList<>(group.getParameterSets(segment.substring(0, open)));
+            String selector = segment.substring(open + 1, segment.length() - 1);
+            int eq = selector.indexOf('=');
+            if (eq < 0) {
+                int index = Integer.parseInt(selector.trim());
+                if (index < 0 || index >= sets.size()) {
+                    throw new IllegalArgumentException("Variant " + name + ": no parameter set " + segment + " in " + key);
+                }
+                return sets.get(index);
+            }
+            String param = selector.substring(0, eq).trim();
+            String value = selector.substring(eq + 1).trim();
+            for (ConfigGroup set : sets) {
+                if (value.equals(set.getParams().get(param))) {
+                    return set;
+                }
+            }
+            throw new IllegalArgumentException("Variant " + name + ": no parameter set " + segment + " in " + key);
+        }
+    }
+
+    private final Scenario shared;
+    private final String networkFile;
+    private final String scheduleFile;
+    private final String vehiclesFile;
+
+    /** Loads network, transit schedule and transit vehicles once (concurrently, see {@link ParallelInputLoader}). */
+    public ScenarioSweepRunner(String networkFile, String scheduleFile, String vehiclesFile) {
+        this.networkFile = networkFile;
+        this.scheduleFile = scheduleFile;
+        this.vehiclesFile = vehiclesFile;
+
+        long start = System.currentTimeMillis();
+        this.shared = ParallelInputLoader.loadScenario(simulatePT.createConfig(networkFile, scheduleFile, vehiclesFile, null));
+        // the only change to the shared inputs, done once before any variant runs
+        new CreateVehiclesForSchedule(shared.getTransitSchedule(), shared.getTransitVehicles()).run();
+        System.out.println("Loaded shared inputs in " + (System.currentTimeMillis() - start) + " ms: "
+                + shared.getNetwork().getLinks().size() + " links, "
+                + shared.getTransitSchedule().getTransitLines().size() + " transit lines");
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: java ScenarioSweepRunner <network.xml.gz> <transitSchedule.xml.gz> <transitVehicles.xml.gz> <variants.txt> [outputDir] [parallelism] [numberOfPersons]");
+            return;
+        }
+        List<Variant> variants = readVariants(args[3]);
+        String outputDir = args.length >= 5 ? args[4] : "output_pt_sweep/";
+        int parallelism = args.length >= 6 ? Integer.parseInt(args[5]) : 2;
+        // without a number of persons every variant uses simulatePT's 10 dummy persons
+        long numberOfPersons = args.length >= 7 ? Long.parseLong(args[6]) : 0;
+
+        String populationFile = null;
+        if (numberOfPersons > 0) {
+            // generated once, every variant reads its own copy of the persons
+            populationFile = outputDir + "synthetic_population.xml.gz";
+            try {
+                Files.createDirectories(Path.of(outputDir));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            new SyntheticPopulationGenerator(SyntheticPopulationGenerator.GREATER_MANCHESTER)
+                    .write(populationFile, numberOfPersons, 2025, Runtime.getRuntime().availableProcessors());
+        }
+
+        new ScenarioSweepRunner(args[0], args[1], args[2]).run(variants, outputDir, populationFile, parallelism);
+    }
+
+    /**
+     * Reads variants from a file with one {@code name;module.param=value;...} line per variant.
+     */
+    public static List<Variant> readVariants(String file) {
+        List<Variant> variants = new ArrayList<>();
+        try (BufferedReader reader = IOUtils.getBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(";");
+                Map<String, String> overrides = new LinkedHashMap<>();
+                for (int i = 1; i < parts.length; i++) {
+                    // the value starts after the last set selector, which may contain '=' itself
+                    int eq = parts[i].indexOf('=', Math.max(0, parts[i].lastIndexOf(']')));
+                    if (eq <= 0) {
+                        throw new IllegalArgumentException("Expected module.param=value in " + file + ": " + parts[i]);
+                    }
+                    overrides.put(parts[i].substring(0, eq).trim(), parts[i].substring(eq + 1).trim());
+                }
+                variants.add(new Variant(parts[0].trim(), overrides));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read variants from " + file, e);
+        }
+        return variants;
+    }
+
+    /**
+     * Runs the variants, at most {@code parallelism} at a time, each into {@code outputDir/<name>/}. A failing
+     * variant does not stop the others; the failures are reported at the end.
+     *
+     * @param populationFile plans file read by every variant (unless overridden); null for the dummy persons
+     */
+    public void run(List<Variant> variants, String outputDir, String populationFile, int parallelism) {
+        if (variants.stream().map(Variant::name).distinct().count() < variants.size()) {
+            throw new IllegalArgumentException("Variant names must be unique, they are used as output directories");
+        }
+        int threads = Math.max(1, Math.min(parallelism, variants.size()));
+        // split the cores between the concurrently running variants, a variant can still override this
+        int threadsPerVariant = Math.max(1, Runtime.getRuntime().availableProcessors() / threads);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "scenario-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Future<Long>> runs = new LinkedHashMap<>();
+        try {
+            for (Variant variant : variants) {
+                String variantOutput = outputDir + variant.name() + "/";
+                runs.put(variant.name(), executor.submit(() -> runVariant(variant, variantOutput, populationFile, threadsPerVariant)));
+            }
+
+            int failed = 0;
+            for (Map.Entry<String, Future<Long>> run : runs.entrySet()) {
+                try {
+                    System.out.println("Variant " + run.getKey() + " finished in " + run.getValue().get() + " ms");
+                } catch (ExecutionException e) {
+                    failed++;
+                    System.out.println("Variant " + run.getKey() + " failed: " + e.getCause());
+                    e.getCause().printStackTrace();
+                }
+            }
+            if (failed > 0) {
+                throw new RuntimeException(failed + " of " + runs.size() + " variants failed");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while running variants", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long runVariant(Variant variant, String outputDir, String populationFile, int threads) {
+        long start = System.currentTimeMillis();
+
+        Config config = simulatePT.createConfig(networkFile, scheduleFile, vehiclesFile, outputDir);
+        config.plans().setInputFile(populationFile);
+        config.global().setNumberOfThreads(threads);
+        variant.apply(config);
+        if (!Objects.equals(config.network().getInputFile(), networkFile)
+                || !Objects.equals(config.transit().getTransitScheduleFile(), scheduleFile)
+                || !Objects.equals(config.transit().getVehiclesFile(), vehiclesFile)) {
+            throw new IllegalArgumentException("Variant " + variant.name() + " overrides a shared input file");
+        }
+
+        Scenario scenario = new ScenarioUtils.ScenarioBuilder(config)
+                .setNetwork(shared.getNetwork())
+                .setTransitSchedule(shared.getTransitSchedule())
+                .setTransitVehicles(shared.getTransitVehicles())
+                .build();
+        if (config.plans().getInputFile() != null) {
+            BlockGzip.readPopulation(config.plans().getInputFile(), scenario);
+        } else {
+            simulatePT.createDummyPersons(scenario.getPopulation());
+        }
+        simulatePT.assignAccessRadiusClasses(scenario);
+
+        simulatePT.createController(scenario).run();
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,389 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.io.NetworkWriter;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitScheduleWriter;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt2matsim.config.PublicTransitMappingConfigGroup;
+import org.matsim.pt2matsim.mapping.PTMapper;
+import org.matsim.pt2matsim.tools.ScheduleTools;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Alternative to {@code PublicTransitMapper} that splits the unmapped schedule into shards by transport mode
+ * (bus, tram, everything else = rail) and maps the shards concurrently.
+ * - Each shard gets copies of the routes of its modes and of the stop facilities those routes use (the mapper
+ *   changes both, and shards mapped at the same time share stops), the transfer times between those stops, and a
+ *   copy of the network filtered to the network modes assigned to its schedule modes (see
+ *   {@link PublicTransitMappingConfigGroup#getTransportModeAssignment()})
+ * - At most {@code parallelism} shards are in flight (mapping or waiting to be stitched), so at most that many
+ *   shard networks exist next to the full network. A shard network is not necessarily small: the bus shard's copy
+ *   holds most of the road network
+ * - Each shard uses its own prefix for artificial links/nodes, so ids created by different shards cannot collide
+ * - Mapped shards are stitched back together in shard order (not completion order): new nodes/links are added to
+ *   the input network, modes of shared links are united, freespeeds the mapper set on shared links (schedule
+ *   freespeed modes, e.g. rail) are copied back, the higher one if several shards set one, and links that are
+ *   neither used by a mapped route nor carry one of the modes to keep on clean up are removed again
+ * The mapping threads configured in the mapper config are spread across the shards that run at the same time.
+ */
+public final class ShardedScheduleMapper {
+
+    private static final String OTHER_SHARD = "rail";
+
+    /** Shard name → schedule modes of that shard. Routes of all other modes go to the "rail" shard. */
+    public static final Map<String, Set<String>> DEFAULT_SHARDS;
+
+    static {
+        Map<String, Set<String>> shards = new LinkedHashMap<>();
+        shards.put("bus", Set.of("bus"));
+        shards.put("tram", Set.of("tram"));
+        shards.put(OTHER_SHARD, Set.of());
+        DEFAULT_SHARDS = Collections.unmodifiableMap(shards);
+    }
+
+    private ShardedScheduleMapper() {
+    }
+
+    /** Reads the input files of the mapper config, maps with {@link #DEFAULT_SHARDS} and writes the output files. */
+    public static void run(String configFile, int parallelism) {
+        PublicTransitMappingConfigGroup ptmConfig = loadMapperConfig(configFile);
+
+        TransitSchedule[] schedule = new TransitSchedule[1];
+        Network[] network = new Network[1];
+        ParallelInputLoader.runAll(List.<Callable<Void>>of(
+                () -> {
+                    schedule[0] = ScheduleTools.readTransitSchedule(ptmConfig.getInputScheduleFile());
+                    return null;
+                },
+                () -> {
+                    network[0] = NetworkSnapshot.readNetwork(ptmConfig.getInputNetworkFile());
+                    return null;
+                }));
+
+        TransitSchedule mapped = map(schedule[0], network[0], configFile, DEFAULT_SHARDS, parallelism);
+
+        BlockGzip.write(ptmConfig.getOutputNetworkFile(), out -> new NetworkWriter(network[0]).write(out));
+        BlockGzip.writeViaFile(ptmConfig.getOutputScheduleFile(), file -> new TransitScheduleWriter(mapped).writeFile(file));
+        if (ptmConfig.getOutputStreetNetworkFile() != null) {
+            Network streetNetwork = ModeSubnetworks.index(network[0]).copy(ptmConfig.getModesToKeepOnCleanUp());
+            BlockGzip.write(ptmConfig.getOutputStreetNetworkFile(), out -> new NetworkWriter(streetNetwork).write(out));
+        }
+    }
+
+    /**
+     * Maps the schedule shard by shard and returns the stitched, mapped schedule. The network is modified in place.
+     *
+     * @param configFile  mapper config, loaded once per shard so shards do not share mutable config state
+     * @param parallelism number of shards mapped at the same time
+     */
+    public static TransitSchedule map(TransitSchedule schedule, Network network, String configFile,
+                                      Map<String, Set<String>> shards, int parallelism) {
+        PublicTransitMappingConfigGroup ptmConfig = loadMapperConfig(configFile);
+
+        // 1. Partition routes by mode
+        Map<String, TransitSchedule> shardSchedules = partition(schedule, shards);
+
+        // links by mode, computed once for all shards (the network is modified after mapping, so not shared)
+        ModeSubnetworks subnetworks = ModeSubnetworks.index(network);
+
+        // 2. Map shards concurrently, threads of the mapper config are split between concurrently running shards
+        int concurrentShards = Math.max(1, Math.min(parallelism, shardSchedules.size()));
+        int threadsPerShard = Math.max(1, Runtime.getRuntime().availableProcessors() / concurrentShards);
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrentShards);
+        Deque<Map.Entry<String, Future<Network>>> inFlight = new ArrayDeque<>();
+        try {
+            TransitSchedule result = schedule.getFactory().createTransitSchedule();
+            // links whose freespeed a stitched shard has set
+            Set<Id<Link>> freespeedSet = new HashSet<>();
+            for (Map.Entry<String, TransitSchedule> shard : shardSchedules.entrySet()) {
+                String name = shard.getKey();
+                TransitSchedule shardSchedule = shard.getValue();
+                // 3. Stitch in shard order; a shard network is released once stitched, before the next shard starts
+                if (inFlight.size() == concurrentShards) {
+                    stitch(inFlight.poll(), shardSchedules, result, network, freespeedSet);
+                }
+                PublicTransitMappingConfigGroup shardConfig = loadMapperConfig(configFile);
+                shardConfig.setNumOfThreads(threadsPerShard);
+                shardConfig.setPrefixArtificial(shardConfig.getPrefixArtificial() + name + "_");
+                // copied on this thread, stitching (which modifies the network) never runs at the same time
+                Network shardNetwork = subnetworks.copy(networkModes(shardSchedule, shardConfig));
+
+                inFlight.add(Map.entry(name, executor.submit(() -> {
+                    System.out.println("Mapping shard '" + name + "': " + shardSchedule.getTransitLines().size() + " lines on "
+                            + shardNetwork.getLinks().size() + " links, " + threadsPerShard + " threads");
+                    PTMapper.mapScheduleToNetwork(shardSchedule, shardNetwork, shardConfig);
+                    return shardNetwork;
+                })));
+            }
+            while (!inFlight.isEmpty()) {
+                stitch(inFlight.poll(), shardSchedules, result, network, freespeedSet);
+            }
+            cleanUp(result, network, ptmConfig.getModesToKeepOnCleanUp());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while mapping schedule shards", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Mapping a schedule shard failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void stitch(Map.Entry<String, Future<Network>> shard, Map<String, TransitSchedule> shardSchedules,
+                               TransitSchedule result, Network network, Set<Id<Link>> freespeedSet)
+            throws InterruptedException, ExecutionException {
+        Network shardNetwork = shard.getValue().get();
+        mergeSchedule(shardSchedules.get(shard.getKey()), result);
+        mergeNetwork(shardNetwork, network, freespeedSet);
+    }
+
+    private static PublicTransitMappingConfigGroup loadMapperConfig(String configFile) {
+        Config config = ConfigUtils.loadConfig(configFile, PublicTransitMappingConfigGroup.createDefaultConfig());
+        return ConfigUtils.addOrGetModule(config, PublicTransitMappingConfigGroup.class);
+    }
+
+    // ---------------------------------------------------------------- partitioning
+
+    private static Map<String, TransitSchedule> partition(TransitSchedule schedule, Map<String, Set<String>> shards) {
+        Map<String, TransitSchedule> shardSchedules = new LinkedHashMap<>();
+        for (String shard : shards.keySet()) {
+            shardSchedules.put(shard, schedule.getFactory().createTransitSchedule());
+        }
+
+        for (TransitLine line : schedule.getTransitLines().values()) {
+            for (TransitRoute route : line.getRoutes().values()) {
+                TransitSchedule shardSchedule = shardSchedules.get(shardOf(route.getTransportMode(), shards));
+                TransitLine shardLine = shardSchedule.getTransitLines().get(line.getId());
+                if (shardLine == null) {
+                    shardLine = copyLine(line, shardSchedule);
+                }
+                shardLine.addRoute(copyRoute(route, shardSchedule));
+            }
+        }
+
+        // drop empty shards, every remaining shard gets the transfer times between its stops
+        shardSchedules.values().removeIf(s -> s.getTransitLines().isEmpty());
+        for (TransitSchedule shardSchedule : shardSchedules.values()) {
+            copyTransferTimes(schedule, shardSchedule);
+        }
+        return shardSchedules;
+    }
+
+    private static String shardOf(String mode, Map<String, Set<String>> shards) {
+        for (Map.Entry<String, Set<String>> shard : shards.entrySet()) {
+            if (shard.getValue().contains(mode)) {
+                return shard.getKey();
+            }
+        }
+        return shards.containsKey(OTHER_SHARD) ? OTHER_SHARD : shards.keySet().iterator().next();
+    }
+
+    // network modes the routes of a shard may be mapped on
+    private static Set<String> networkModes(TransitSchedule shardSchedule, PublicTransitMappingConfigGroup config) {
+        Set<String> networkModes = new HashSet<>();
+        for (TransitLine line : shardSchedule.getTransitLines().values()) {
+            for (TransitRoute route : line.getRoutes().values()) {
+                Set<String> assigned = config.getTransportModeAssignment().get(route.getTransportMode());
+                if (assigned != null) {
+                    networkModes.addAll(assigned);
+                }
+            }
+        }
+        return networkModes;
+    }
+
+    // ---------------------------------------------------------------- stitching
+
+    private static void mergeSchedule(TransitSchedule shardSchedule, TransitSchedule result) {
+        for (TransitStopFacility stop : shardSchedule.getFacilities().values()) {
+            if (!result.getFacilities().containsKey(stop.getId())) {
+                result.addStopFacility(stop);
+            }
+        }
+        for (TransitLine shardLine : shardSchedule.getTransitLines().values()) {
+            TransitLine line = result.getTransitLines().get(shardLine.getId());
+            if (line == null) {
+                line = copyLine(shardLine, result);
+            }
+            for (TransitRoute route : shardLine.getRoutes().values()) {
+                // a stop mapped to the same link in several shards exists once per shard, the first one is kept
+                for (TransitRouteStop routeStop : route.getStops()) {
+                    TransitStopFacility stop = result.getFacilities().get(routeStop.getStopFacility().getId());
+                    if (stop != routeStop.getStopFacility()) {
+                        routeStop.setStopFacility(stop);
+                    }
+                }
+                line.addRoute(route);
+            }
+        }
+        copyTransferTimes(shardSchedule, result);
+    }
+
+    private static void mergeNetwork(Network shardNetwork, Network network, Set<Id<Link>> freespeedSet) {
+        for (Node shardNode : shardNetwork.getNodes().values()) {
+            if (!network.getNodes().containsKey(shardNode.getId())) {
+                Node node = network.getFactory().createNode(shardNode.getId(), shardNode.getCoord());
+                AttributesUtils.copyAttributesFromTo(shardNode, node);
+                network.addNode(node);
+            }
+        }
+        for (Link shardLink : shardNetwork.getLinks().values()) {
+            Link link = network.getLinks().get(shardLink.getId());
+            if (link == null) {
+                // artificial link created by the mapper
+                link = network.getFactory().createLink(shardLink.getId(),
+                        network.getNodes().get(shardLink.getFromNode().getId()),
+                        network.getNodes().get(shardLink.getToNode().getId()));
+                link.setLength(shardLink.getLength());
+                link.setFreespeed(shardLink.getFreespeed());
+                link.setCapacity(shardLink.getCapacity());
+                link.setNumberOfLanes(shardLink.getNumberOfLanes());
+                link.setAllowedModes(shardLink.getAllowedModes());
+                AttributesUtils.copyAttributesFromTo(shardLink, link);
+                network.addLink(link);
+            } else {
+                Set<String> modes = ModeSets.union(link.getAllowedModes(), shardLink.getAllowedModes());
+                if (modes.size() != link.getAllowedModes().size()) {
+                    link.setAllowedModes(modes);
+                }
+                // set by the mapper for the schedule freespeed modes; the fastest schedule wins, as when mapping
+                // all routes at once
+                if (shardLink.getFreespeed() != link.getFreespeed()) {
+                    link.setFreespeed(freespeedSet.add(link.getId())
+                            ? shardLink.getFreespeed() : Math.max(link.getFreespeed(), shardLink.getFreespeed()));
+                }
+            }
+        }
+    }
+
+    // Removes links neither used by the schedule nor allowing one of the modes to keep, then nodes without links
+    private static void cleanUp(TransitSchedule schedule, Network network, Set<String> modesToKeep) {
+        Set<Id<Link>> used = new HashSet<>();
+        for (TransitStopFacility stop : schedule.getFacilities().values()) {
+            if (stop.getLinkId() != null) {
+                used.add(stop.getLinkId());
+            }
+        }
+        for (TransitLine line : schedule.getTransitLines().values()) {
+            for (TransitRoute route : line.getRoutes().values()) {
+                NetworkRoute networkRoute = route.getRoute();
+                if (networkRoute != null) {
+                    used.add(networkRoute.getStartLinkId());
+                    used.addAll(networkRoute.getLinkIds());
+                    used.add(networkRoute.getEndLinkId());
+                }
+            }
+        }
+
+        List<Id<Link>> unused = new ArrayList<>();
+        long keep = ModeSets.mask(modesToKeep);
+        for (Link link : network.getLinks().values()) {
+            if (!used.contains(link.getId()) && !ModeSets.intersects(link.getAllowedModes(), keep)) {
+                unused.add(link.getId());
+            }
+        }
+        unused.forEach(network::removeLink);
+
+        List<Id<Node>> isolated = new ArrayList<>();
+        for (Node node : network.getNodes().values()) {
+            if (node.getInLinks().isEmpty() && node.getOutLinks().isEmpty()) {
+                isolated.add(node.getId());
+            }
+        }
+        isolated.forEach(network::removeNode);
+
+        System.out.println("Sharded mapping: removed " + unused.size() + " unused links and " + isolated.size() + " isolated nodes");
+    }
+
+    // ---------------------------------------------------------------- helpers
+
+    private static TransitLine copyLine(TransitLine line, TransitSchedule target) {
+        TransitLine copy = target.getFactory().createTransitLine(line.getId());
+        copy.setName(line.getName());
+        AttributesUtils.copyAttributesFromTo(line, copy);
+        target.addTransitLine(copy);
+        return copy;
+    }
+
+    // a copy of the route for the target schedule, with the target's copies of its stop facilities
+    private static TransitRoute copyRoute(TransitRoute route, TransitSchedule target) {
+        TransitScheduleFactory factory = target.getFactory();
+        List<TransitRouteStop> stops = new ArrayList<>(route.getStops().size());
+        for (TransitRouteStop routeStop : route.getStops()) {
+            TransitRouteStop copy = factory.createTransitRouteStop(copyStop(routeStop.getStopFacility(), target),
+                    routeStop.getArrivalOffset(), routeStop.getDepartureOffset());
+            copy.setAwaitDepartureTime(routeStop.isAwaitDepartureTime());
+            copy.setAllowBoarding(routeStop.isAllowBoarding());
+            copy.setAllowAlighting(routeStop.isAllowAlighting());
+            stops.add(copy);
+        }
+        NetworkRoute networkRoute = route.getRoute() == null ? null : route.getRoute().clone();
+        TransitRoute copy = factory.createTransitRoute(route.getId(), networkRoute, stops, route.getTransportMode());
+        copy.setDescription(route.getDescription());
+        AttributesUtils.copyAttributesFromTo(route, copy);
+        for (Departure departure : route.getDepartures().values()) {
+            Departure departureCopy = factory.createDeparture(departure.getId(), departure.getDepartureTime());
+            departureCopy.setVehicleId(departure.getVehicleId());
+            departureCopy.setChainedDepartures(new ArrayList<>(departure.getChainedDepartures()));
+            AttributesUtils.copyAttributesFromTo(departure, departureCopy);
+            copy.addDeparture(departureCopy);
+        }
+        return copy;
+    }
+
+    // the target's copy of the stop facility, created on first use
+    private static TransitStopFacility copyStop(TransitStopFacility stop, TransitSchedule target) {
+        TransitStopFacility copy = target.getFacilities().get(stop.getId());
+        if (copy == null) {
+            copy = target.getFactory().createTransitStopFacility(stop.getId(), stop.getCoord(), stop.getIsBlockingLane());
+            copy.setName(stop.getName());
+            copy.setLinkId(stop.getLinkId());
+            copy.setStopAreaId(stop.getStopAreaId());
+            AttributesUtils.copyAttributesFromTo(stop, copy);
+            target.addStopFacility(copy);
+        }
+        return copy;
+    }
+
+    // transfer times between stops of the target schedule
+    private static void copyTransferTimes(TransitSchedule from, TransitSchedule to) {
+        MinimalTransferTimes.MinimalTransferTimesIterator it = from.getMinimalTransferTimes().iterator();
+        while (it.hasNext()) {
+            it.next();
+            if (to.getFacilities().containsKey(it.getFromStopId()) && to.getFacilities().containsKey(it.getToStopId())
+                    && Double.isNaN(to.getMinimalTransferTimes().get(it.getFromStopId(), it.getToStopId()))) {
+                to.getMinimalTransferTimes().set(it.getFromStopId(), it.getToStopId(), it.getSeconds());
+            }
+        }
+    }
+}
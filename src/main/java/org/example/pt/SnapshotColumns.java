@@ -0,0 +1,237 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Building blocks shared by the binary snapshot caches ({@link NetworkSnapshot}, {@link TransitScheduleSnapshot}):
+ * a string table, attribute columns, big-endian primitive arrays read from a memory-mapped file, and the source file
+ * stamps in the header.
+ *
+ * Both snapshots start with MAGIC, VERSION and the {@link ContentHash.Stamp}s of their source files, followed by the
+ * content hash key. A snapshot is valid if the stamps match; otherwise (same sizes) the content hashes are compared
+ * and, if equal, the new stamps are written into the header in place.
+ */
+final class SnapshotColumns {
+
+    static final byte STRING = 0;
+    static final byte DOUBLE = 1;
+    static final byte FLOAT = 2;
+    static final byte INTEGER = 3;
+    static final byte LONG = 4;
+    static final byte BOOLEAN = 5;
+
+    private SnapshotColumns() {
+    }
+
+    /** Maps the whole file read-only, or returns null if it is too large for a single buffer. */
+    static MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /** Attributes of many entities as flat columns: per-entity count, then key/type/value per attribute. */
+    static final class AttributeColumns {
+        final int[] counts;
+        final int[] keys;
+        final byte[] types;
+        final long[] values;
+
+        private AttributeColumns(int[] counts, int[] keys, byte[] types, long[] values) {
+            this.counts = counts;
+            this.keys = keys;
+            this.types = types;
+            this.values = values;
+        }
+
+        static AttributeColumns encode(List<Attributes> entities, StringTable strings) {
+            int[] counts = new int[entities.size()];
+            int total = 0;
+            for (int i = 0; i < entities.size(); i++) {
+                counts[i] = entities.get(i).getAsMap().size();
+                total += counts[i];
+            }
+            int[] keys = new int[total];
+            byte[] types = new byte[total];
+            long[] values = new long[total];
+            int pos = 0;
+            for (Attributes attributes : entities) {
+                for (Map.Entry<String, Object> e : attributes.getAsMap().entrySet()) {
+                    keys[pos] = strings.index(e.getKey());
+                    Object value = e.getValue();
+                    if (value instanceof String s) {
+                        types[pos] = STRING;
+                        values[pos] = strings.index(s);
+                    } else if (value instanceof Double d) {
+                        types[pos] = DOUBLE;
+                        values[pos] = Double.doubleToRawLongBits(d);
+                    } else if (value instanceof Float f) {
+                        types[pos] = FLOAT;
+                        values[pos] = Float.floatToRawIntBits(f);
+                    } else if (value instanceof Integer n) {
+                        types[pos] = INTEGER;
+                        values[pos] = n;
+                    } else if (value instanceof Long n) {
+                        types[pos] = LONG;
+                        values[pos] = n;
+                    } else if (value instanceof Boolean b) {
+                        types[pos] = BOOLEAN;
+                        values[pos] = b ? 1 : 0;
+                    } else {
+                        throw new UnsupportedOperationException("attribute '" + e.getKey() + "' has unsupported type "
+                                + (value == null ? "null" : value.getClass().getName()));
+                    }
+                    pos++;
+                }
+            }
+            return new AttributeColumns(counts, keys, types, values);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            writeInts(out, counts);
+            out.writeInt(keys.length);
+            writeInts(out, keys);
+            out.write(types);
+            for (long value : values) {
+                out.writeLong(value);
+            }
+        }
+
+        static AttributeColumns read(ByteBuffer buffer, int entities) {
+            int[] counts = readInts(buffer, entities);
+            int total = buffer.getInt();
+            int[] keys = readInts(buffer, total);
+            byte[] types = new byte[total];
+            buffer.get(types);
+            long[] values = new long[total];
+            buffer.asLongBuffer().get(values);
+            buffer.position(buffer.position() + 8 * total);
+
+            // counts → start offsets
+            int offset = 0;
+            for (int i = 0; i < counts.length; i++) {
+                int count = counts[i];
+                counts[i] = offset;
+                offset += count;
+            }
+            return new AttributeColumns(counts, keys, types, values);
+        }
+
+        // only valid after read(): counts holds start offsets
+        void apply(int entity, Attributes target, String[] strings) {
+            int end = entity + 1 < counts.length ? counts[entity + 1] : keys.length;
+            for (int pos = counts[entity]; pos < end; pos++) {
+                long value = values[pos];
+                Object decoded = switch (types[pos]) {
+                    case STRING -> strings[(int) value];
+                    case DOUBLE -> Double.longBitsToDouble(value);
+                    case FLOAT -> Float.intBitsToFloat((int) value);
+                    case INTEGER -> (int) value;
+                    case LONG -> value;
+                    case BOOLEAN -> value != 0;
+                    default -> throw new IllegalStateException("unknown attribute type " + types[pos]);
+                };
+                target.putAttribute(strings[keys[pos]], decoded);
+            }
+        }
+    }
+
+    static final class StringTable {
+        final Object2IntOpenHashMap<String> indices = new Object2IntOpenHashMap<>();
+        final List<String> values = new ArrayList<>();
+
+        StringTable() {
+            indices.defaultReturnValue(-1);
+        }
+
+        int index(String s) {
+            int index = indices.getInt(s);
+            if (index < 0) {
+                index = values.size();
+                values.add(s);
+                indices.put(s, index);
+            }
+            return index;
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    // ---------------------------------------------------------------- stamps
+
+    /** Position of the first stamp in the header, after MAGIC and VERSION. */
+    static final long STAMP_POSITION = Long.BYTES + Integer.BYTES;
+
+    static void writeStamp(DataOutputStream out, ContentHash.Stamp stamp) throws IOException {
+        out.writeLong(stamp.size());
+        out.writeLong(stamp.modified());
+    }
+
+    static ContentHash.Stamp readStamp(ByteBuffer buffer) {
+        return new ContentHash.Stamp(buffer.getLong(), buffer.getLong());
+    }
+
+    /** Overwrites the stamps in the header of the snapshot, for sources touched but not changed (a copy, a checkout). */
+    static void restamp(Path snapshot, ContentHash.Stamp... stamps) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(stamps.length * 2 * Long.BYTES);
+        for (ContentHash.Stamp stamp : stamps) {
+            buffer.putLong(stamp.size()).putLong(stamp.modified());
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+            channel.write(buffer, STAMP_POSITION);
+        }
+    }
+
+    // ---------------------------------------------------------------- primitive io
+
+    static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    static int[] readInts(ByteBuffer buffer, int n) {
+        int[] values = new int[n];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + 4 * n);
+        return values;
+    }
+
+    static double[] readDoubles(ByteBuffer buffer, int n) {
+        double[] values = new double[n];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + 8 * n);
+        return values;
+    }
+}
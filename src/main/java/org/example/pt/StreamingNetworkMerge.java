@@ -0,0 +1,296 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
+import org.matsim.core.utils.io.IOUtils;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.DTD;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Streaming variant of {@link MergeNetworks}: merges a secondary network file into a base network file
+ * without building {@code Network} objects. Both files are read event by event and the merged network is
+ * written straight to disk, so the peak heap only holds the ids of the secondary network.
+ * - Pass 1 reads the secondary network and keeps its node ids and link id → modes
+ * - Pass 2 copies the base network, unions the allowed modes of links also present in the secondary network,
+ *   and appends the secondary nodes/links missing in the base at the end of the nodes/links sections
+ * The result is the same network as the in-memory merge (same nodes, links, modes and attributes). Links without a
+ * modes attribute count as "car", as in MATSim's network reader. The output keeps the DOCTYPE of the base network
+ * (network_v1 or network_v2).
+ */
+public final class StreamingNetworkMerge {
+
+    // only written if the base network has no DOCTYPE of its own
+    private static final String NETWORK_DTD = "<!DOCTYPE network SYSTEM \"http://www.matsim.org/files/dtd/network_v2.dtd\">";
+    // modes of a link without a modes attribute, as in MATSim's network reader
+    private static final String DEFAULT_MODES = "car";
+
+    private final XMLInputFactory inputFactory;
+    private final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+    // ids of the secondary network, shrinking while the base network is copied
+    private final Set<String> secondaryNodeIds = new ObjectOpenHashSet<>();
+    private final Map<String, String> secondaryLinkModes = new Object2ObjectOpenHashMap<>();
+
+    private int nodesAdded = 0;
+    private int linksAdded = 0;
+    private int linksMerged = 0;
+
+    private StreamingNetworkMerge() {
+        this.inputFactory = XMLInputFactory.newInstance();
+        // never fetch the network dtd from matsim.org
+        this.inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        this.inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    public static void merge(String baseFile, String secondaryFile, String outputFile) {
+        StreamingNetworkMerge merge = new StreamingNetworkMerge();
+        merge.scanSecondary(secondaryFile);
+        merge.write(baseFile, secondaryFile, outputFile);
+
+        System.out.println("Streaming merge complete. Merged network written to: " + outputFile);
+        System.out.println("Added " + merge.nodesAdded + " nodes and " + merge.linksAdded + " links, merged modes of " +
+                merge.linksMerged + " existing links.");
+    }
+
+    // ---------------------------------------------------------------- pass 1
+
+    private void scanSecondary(String secondaryFile) {
+        Map<String, String> internedModes = new HashMap<>();
+
+        try (InputStream in = IOUtils.getInputStream(IOUtils.getFileUrl(secondaryFile))) {
+            XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String name = reader.getLocalName();
+                if (name.equals("node")) {
+                    secondaryNodeIds.add(reader.getAttributeValue(null, "id"));
+                } else if (name.equals("link")) {
+                    String modes = reader.getAttributeValue(null, "modes");
+                    if (modes == null) {
+                        modes = DEFAULT_MODES;
+                    }
+                    secondaryLinkModes.put(reader.getAttributeValue(null, "id"), internedModes.computeIfAbsent(modes, m -> m));
+                }
+            }
+            reader.close();
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("Could not read secondary network " + secondaryFile, e);
+        }
+    }
+
+    // ---------------------------------------------------------------- pass 2
+
+    private void write(String baseFile, String secondaryFile, String outputFile) {
+        try (InputStream baseIn = IOUtils.getInputStream(IOUtils.getFileUrl(baseFile));
+             InputStream secondaryIn = IOUtils.getInputStream(IOUtils.getFileUrl(secondaryFile));
+             OutputStream out = IOUtils.getOutputStream(IOUtils.getFileUrl(outputFile), false)) {
+
+            XMLEventReader base = inputFactory.createXMLEventReader(baseIn);
+            XMLEventReader secondary = inputFactory.createXMLEventReader(secondaryIn);
+            XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(out, "UTF-8");
+
+            writer.add(eventFactory.createStartDocument("UTF-8", "1.0"));
+            writer.add(eventFactory.createCharacters("\n"));
+
+            boolean dtdWritten = false;
+            boolean nodesAppended = false;
+            boolean linksAppended = false;
+
+            while (base.hasNext()) {
+                XMLEvent event = base.nextEvent();
+
+                if (event.isStartDocument() || event.isEndDocument()) {
+                    continue;
+                }
+                if (event.getEventType() == XMLStreamConstants.DTD) {
+                    // keep the base network's DOCTYPE, it tells MATSim's reader the file format version
+                    writer.add(eventFactory.createDTD(((DTD) event).getDocumentTypeDeclaration()));
+                    writer.add(eventFactory.createCharacters("\n"));
+                    dtdWritten = true;
+                    continue;
+                }
+
+                if (event.isStartElement() && !dtdWritten) {
+                    writer.add(eventFactory.createDTD(NETWORK_DTD));
+                    writer.add(eventFactory.createCharacters("\n"));
+                    dtdWritten = true;
+                }
+
+                if (event.isStartElement()) {
+                    StartElement start = event.asStartElement();
+                    String name = start.getName().getLocalPart();
+                    if (name.equals("node")) {
+                        // node exists in base → base wins, not appended again
+                        secondaryNodeIds.remove(attribute(start, "id"));
+                    } else if (name.equals("link")) {
+                        String secondaryModes = secondaryLinkModes.remove(attribute(start, "id"));
+                        if (secondaryModes != null) {
+                            event = withUnionOfModes(start, secondaryModes);
+                            linksMerged++;
+                        }
+                    }
+                } else if (event.isEndElement()) {
+                    String name = event.asEndElement().getName().getLocalPart();
+                    if (name.equals("nodes")) {
+                        nodesAdded += appendSecondary(secondary, writer, "nodes", "node", secondaryNodeIds::contains);
+                        nodesAppended = true;
+                    } else if (name.equals("links")) {
+                        linksAdded += appendSecondary(secondary, writer, "links", "link", secondaryLinkModes::containsKey);
+                        linksAppended = true;
+                    } else if (name.equals("network")) {
+                        // base without nodes/links sections: wrap the secondary elements in their own section
+                        if (!nodesAppended) {
+                            writer.add(eventFactory.createStartElement("", "", "nodes"));
+                            nodesAdded += appendSecondary(secondary, writer, "nodes", "node", secondaryNodeIds::contains);
+                            writer.add(eventFactory.createEndElement("", "", "nodes"));
+                            nodesAppended = true;
+                        }
+                        if (!linksAppended) {
+                            writer.add(eventFactory.createStartElement("", "", "links"));
+                            linksAdded += appendSecondary(secondary, writer, "links", "link", secondaryLinkModes::containsKey);
+                            writer.add(eventFactory.createEndElement("", "", "links"));
+                            linksAppended = true;
+                        }
+                    }
+                }
+
+                writer.add(event);
+            }
+
+            writer.add(eventFactory.createCharacters("\n"));
+            writer.add(eventFactory.createEndDocument());
+            writer.flush();
+            writer.close();
+            base.close();
+            secondary.close();
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("Could not merge " + baseFile + " and " + secondaryFile + " into " + outputFile, e);
+        }
+    }
+
+    /**
+     * Advances the secondary reader into the given section and copies every element whose id passes the filter.
+     * Returns the number of copied elements.
+     */
+    private int appendSecondary(XMLEventReader secondary, XMLEventWriter writer, String section, String element,
+                                Predicate<String> keep) throws XMLStreamException {
+        // skip forward to the start of the section
+        boolean inSection = false;
+        while (secondary.hasNext() && !inSection) {
+            XMLEvent event = secondary.nextEvent();
+            inSection = event.isStartElement() && event.asStartElement().getName().getLocalPart().equals(section);
+        }
+
+        int copied = 0;
+        while (inSection && secondary.hasNext()) {
+            XMLEvent event = secondary.nextEvent();
+            if (event.isEndElement() && event.asEndElement().getName().getLocalPart().equals(section)) {
+                break;
+            }
+            if (!event.isStartElement() || !event.asStartElement().getName().getLocalPart().equals(element)) {
+                continue;
+            }
+            if (keep.test(attribute(event.asStartElement(), "id"))) {
+                writer.add(eventFactory.createCharacters("\n\t\t"));
+                copySubtree(event, secondary, writer);
+                copied++;
+            } else {
+                skipSubtree(secondary);
+            }
+        }
+        if (copied > 0) {
+            writer.add(eventFactory.createCharacters("\n\t"));
+        }
+        return copied;
+    }
+
+    private static void copySubtree(XMLEvent start, XMLEventReader reader, XMLEventWriter writer) throws XMLStreamException {
+        writer.add(start);
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+            writer.add(event);
+        }
+    }
+
+    private static void skipSubtree(XMLEventReader reader) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                depth++;
+            } else if (event.isEndElement()) {
+                depth--;
+            }
+        }
+    }
+
+    // Same link start element, with the modes attribute replaced by base modes ∪ secondary modes
+    private StartElement withUnionOfModes(StartElement link, String secondaryModes) {
+        Set<String> modes = new LinkedHashSet<>();
+        String baseModes = attribute(link, "modes");
+        addModes(modes, baseModes == null ? DEFAULT_MODES : baseModes);
+        addModes(modes, secondaryModes);
+
+        List<Attribute> attributes = new ArrayList<>();
+        boolean hasModes = false;
+        Iterator<Attribute> it = link.getAttributes();
+        while (it.hasNext()) {
+            Attribute attribute = it.next();
+            if (attribute.getName().getLocalPart().equals("modes")) {
+                attributes.add(eventFactory.createAttribute("modes", String.join(",", modes)));
+                hasModes = true;
+            } else {
+                attributes.add(attribute);
+            }
+        }
+        if (!hasModes) {
+            attributes.add(eventFactory.createAttribute("modes", String.join(",", modes)));
+        }
+        return eventFactory.createStartElement(link.getName(), attributes.iterator(), link.getNamespaces());
+    }
+
+    private static void addModes(Set<String> modes, String modesAttribute) {
+        for (String mode : modesAttribute.split(",")) {
+            String trimmed = mode.trim();
+            if (!trimmed.isEmpty()) {
+                modes.add(trimmed);
+            }
+        }
+    }
+
+    private static String attribute(StartElement element, String name) {
+        Attribute attribute = element.getAttributeByName(new QName(name));
+        return attribute == null ? null : attribute.getValue();
+    }
+}
@@ -0,0 +1,268 @@
+package org.example.pt;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.Time;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Generates home - work - home PT agents for load tests.
+ *
+ * Home and work locations are sampled from zones (a circle with a home and a work weight), uniformly within the zone.
+ * Persons are generated in partitions of {@link #PARTITION_SIZE}; every partition has its own random generator seeded
+ * from the base seed and the partition number, so the output is identical for any number of threads. Partitions are
+ * generated in parallel and streamed to the file in partition order, only a bounded number of partitions is kept in
+ * memory at any time.
+ */
+public final class SyntheticPopulationGenerator {
+
+    public static final int PARTITION_SIZE = 10_000;
+
+    /** A circular zone, weights are relative to the other zones. */
+    public record Zone(String name, Coord center, double radius, double homeWeight, double workWeight) {
+    }
+
+    /** The locations the 10 dummy persons of simulatePT used to start from, as 1.5 km zones. */
+    public static final List<Zone> GREATER_MANCHESTER = List.of(
+            new Zone("Piccadilly", new Coord(383997.433469516, 398258.3164167263), 1500, 1.0, 3.0),
+            new Zone("Salford", new Coord(383176.9864780864, 398950.96491924033), 1500, 1.0, 1.5),
+            new Zone("Trafford", new Coord(381243.3895996723, 396621.92106414476), 1500, 1.0, 1.5),
+            new Zone("Shudehill", new Coord(385163.0545203696, 397497.9561363385), 1500, 1.0, 2.0),
+            new Zone("Altrincham", new Coord(377018.2134128619, 387851.496493614), 1500, 1.0, 0.5),
+            new Zone("Victoria", new Coord(390474.18371438404, 398040.4283476201), 1500, 1.0, 1.0),
+            new Zone("Old Trafford", new Coord(380511.2868218826, 396179.87520340725), 1500, 1.0, 1.0),
+            new Zone("Cheetham Hill", new Coord(384313.5680226146, 401505.9052472415), 1500, 1.0, 0.5),
+            new Zone("Didsbury", new Coord(388142.33324807795, 394485.61652863293), 1500, 1.0, 0.5),
+            new Zone("Wythenshawe", new Coord(378832.9669145816, 392070.6823141931), 1500, 1.0, 1.0));
+
+    private final List<Zone> zones;
+    private final double[] cumulativeHome;
+    private final double[] cumulativeWork;
+    private final PopulationFactory factory = PopulationUtils.getFactory();
+
+    public SyntheticPopulationGenerator(List<Zone> zones) {
+        if (zones.isEmpty()) {
+            throw new IllegalArgumentException("At least one zone is required");
+        }
+        this.zones = List.copyOf(zones);
+        this.cumulativeHome = cumulative(zones, true);
+        this.cumulativeWork = cumulative(zones, false);
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: java SyntheticPopulationGenerator <output_population.xml.gz> <numberOfPersons> [seed] [zones.csv] [threads]");
+            return;
+        }
+        long persons = Long.parseLong(args[1]);
+        long seed = args.length >= 3 ? Long.parseLong(args[2]) : 2025;
+        List<Zone> zones = args.length >= 4 ? readZones(args[3]) : GREATER_MANCHESTER;
+        int threads = args.length >= 5 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+
+        new SyntheticPopulationGenerator(zones).write(args[0], persons, seed, threads);
+    }
+
+    /**
+     * Reads zones from a semicolon separated file with the header
+     * {@code name;x;y;radius;homeWeight;workWeight} (coordinates in the network CRS).
+     */
+    public static List<Zone> readZones(String file) {
+        List<Zone> zones = new ArrayList<>();
+        try (BufferedReader reader = IOUtils.getBufferedReader(file)) {
+            String line = reader.readLine(); // header
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] parts = line.split(";");
+                zones.add(new Zone(parts[0],
+                        new Coord(Double.parseDouble(parts[1]), Double.parseDouble(parts[2])),
+                        Double.parseDouble(parts[3]),
+                        Double.parseDouble(parts[4]),
+                        Double.parseDouble(parts[5])));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read zones from " + file, e);
+        }
+        return zones;
+    }
+
+    /**
+     * Generates {@code persons} persons and streams them to {@code outputFile} as population v6 XML; .gz files are
+     * block-compressed while they are written ({@link BlockGzip#openOutputStream}), there is no uncompressed copy.
+     */
+    public void write(String outputFile, long persons, long seed, int threads) {
+        try (BufferedWriter writer = new BufferedWriter(
+                new OutputStreamWriter(BlockGzip.openOutputStream(outputFile), StandardCharsets.UTF_8), 1 << 16)) {
+            stream(writer, persons, seed, threads);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write population to " + outputFile, e);
+        }
+        System.out.println("Wrote " + persons + " synthetic persons to " + outputFile);
+    }
+
+    private void stream(BufferedWriter writer, long persons, long seed, int threads) throws IOException {
+        long partitions = (persons + PARTITION_SIZE - 1) / PARTITION_SIZE;
+        // two partitions per thread in flight: keeps all threads busy while the writer catches up
+        int maxInFlight = Math.max(1, threads) * 2;
+
+        writer.write("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n");
+        writer.write("<!DOCTYPE population SYSTEM \"http://www.matsim.org/files/dtd/population_v6.dtd\">\n\n");
+        writer.write("<population>\n\n");
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "population-generator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Deque<Future<List<Person>>> inFlight = new ArrayDeque<>();
+            long next = 0;
+            while (next < partitions || !inFlight.isEmpty()) {
+                while (next < partitions && inFlight.size() < maxInFlight) {
+                    long partition = next++;
+                    long first = partition * PARTITION_SIZE;
+                    int size = (int) Math.min(PARTITION_SIZE, persons - first);
+                    inFlight.add(executor.submit(() -> generatePartition(partition, first, size, seed)));
+                }
+                for (Person person : inFlight.poll().get()) {
+                    writePerson(writer, person);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating the population", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Could not generate population: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        writer.write("</population>\n");
+    }
+
+    // the person with its selected plan, as MATSim's population v6 writer writes it
+    private static void writePerson(BufferedWriter writer, Person person) throws IOException {
+        writer.write("\t<person id=\"" + person.getId() + "\">\n");
+        writer.write("\t\t<plan selected=\"yes\">\n");
+        for (PlanElement element : person.getSelectedPlan().getPlanElements()) {
+            if (element instanceof Activity activity) {
+                writer.write("\t\t\t<activity type=\"" + activity.getType() + "\" x=\"" + activity.getCoord().getX()
+                        + "\" y=\"" + activity.getCoord().getY() + "\"");
+                if (activity.getEndTime().isDefined()) {
+                    writer.write(" end_time=\"" + Time.writeTime(activity.getEndTime().seconds()) + "\"");
+                }
+                if (activity.getMaximumDuration().isDefined()) {
+                    writer.write(" max_dur=\"" + Time.writeTime(activity.getMaximumDuration().seconds()) + "\"");
+                }
+                writer.write(" />\n");
+            } else if (element instanceof Leg leg) {
+                writer.write("\t\t\t<leg mode=\"" + leg.getMode() + "\" />\n");
+            }
+        }
+        writer.write("\t\t</plan>\n");
+        writer.write("\t</person>\n\n");
+    }
+
+    List<Person> generatePartition(long partition, long firstIndex, int size, long seed) {
+        SplittableRandom random = new SplittableRandom(mix(seed ^ mix(partition + 1)));
+        List<Person> persons = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            persons.add(createPerson(firstIndex + i, random));
+        }
+        return persons;
+    }
+
+    private Person createPerson(long index, SplittableRandom random) {
+        int homeZone = sample(cumulativeHome, random);
+        int workZone = sample(cumulativeWork, random);
+        // go somewhere else, as long as there is somewhere else to go
+        for (int attempt = 0; workZone == homeZone && zones.size() > 1 && attempt < 10; attempt++) {
+            workZone = sample(cumulativeWork, random);
+        }
+        Coord home = location(zones.get(homeZone), random);
+        Coord work = location(zones.get(workZone), random);
+
+        Person person = factory.createPerson(Id.createPersonId("mcr_pt_" + index));
+        Plan plan = factory.createPlan();
+        person.addPlan(plan);
+
+        Activity h1 = factory.createActivityFromCoord("home", home);
+        h1.setEndTime(7 * 3600 + 30 * 60 + random.nextInt(1800)); // 07:30 - 08:00
+        plan.addActivity(h1);
+
+        Leg ptOut = factory.createLeg("pt");
+        plan.addLeg(ptOut);
+
+        Activity w = factory.createActivityFromCoord("work", work);
+        w.setMaximumDuration(9 * 3600);
+        plan.addActivity(w);
+
+        Leg ptBack = factory.createLeg("pt");
+        plan.addLeg(ptBack);
+
+        Activity h2 = factory.createActivityFromCoord("home", home);
+        plan.addActivity(h2);
+        return person;
+    }
+
+    // uniform within the circle
+    private static Coord location(Zone zone, SplittableRandom random) {
+        double r = zone.radius() * Math.sqrt(random.nextDouble());
+        double angle = 2 * Math.PI * random.nextDouble();
+        return new Coord(zone.center().getX() + r * Math.cos(angle), zone.center().getY() + r * Math.sin(angle));
+    }
+
+    private static int sample(double[] cumulative, SplittableRandom random) {
+        double value = random.nextDouble() * cumulative[cumulative.length - 1];
+        int i = Arrays.binarySearch(cumulative, value);
+        i = i >= 0 ? i + 1 : -i - 1;
+        return Math.min(i, cumulative.length - 1);
+    }
+
+    private static double[] cumulative(List<Zone> zones, boolean home) {
+        double[] cumulative = new double[zones.size()];
+        double sum = 0;
+        for (int i = 0; i < zones.size(); i++) {
+            double weight = home ? zones.get(i).homeWeight() : zones.get(i).workWeight();
+            if (weight < 0) {
+                throw new IllegalArgumentException("Negative weight for zone " + zones.get(i).name());
+            }
+            sum += weight;
+            cumulative[i] = sum;
+        }
+        if (sum <= 0) {
+            throw new IllegalArgumentException("All " + (home ? "home" : "work") + " weights are zero");
+        }
+        return cumulative;
+    }
+
+    // SplitMix64 finalizer, decorrelates the seeds of neighbouring partitions
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,397 @@
+package org.example.pt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.pt2matsim.tools.NetworkTools;
+import org.matsim.pt2matsim.tools.ScheduleTools;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Writes a network and a mapped transit schedule as GeoJSON split into square tiles, for viewing large networks in
+ * a browser or GIS tool one region at a time instead of one document of several GB.
+ *
+ * Output (coordinates in WGS84, tile grid in the projected input CRS, e.g. EPSG:27700):
+ * - {@code network/<column>_<row>.geojson}: links as LineStrings, assigned to the tile of their midpoint
+ * - {@code schedule/<column>_<row>.geojson}: stop facilities as Points and transit routes as LineStrings, a route is
+ *   split into one piece per tile it passes (by link midpoint)
+ * - {@code index.json}: CRS, tile size and per tile the file, WGS84 bounding box and number of features
+ * Tile column/row are {@code floor(x / tileSize)}, {@code floor(y / tileSize)}, so tiles of different exports with
+ * the same tile size line up.
+ *
+ * Only link/stop/route indices are bucketed up front; the tiles are written in parallel, each straight to its file,
+ * so the heap holds one write buffer per thread instead of a GeoJSON document.
+ *
+ * Usage: java TiledGeojsonExporter crs network.xml.gz schedule.xml.gz|- outputDir [tileSize]
+ */
+public final class TiledGeojsonExporter {
+
+    public static final double DEFAULT_TILE_SIZE = 5000;
+
+    private static final String NETWORK = "network";
+    private static final String SCHEDULE = "schedule";
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final String crs;
+    private final double tileSize;
+    // transformations are created per thread, GeoTools math transforms are not documented as thread-safe
+    private final ThreadLocal<CoordinateTransformation> toWgs84;
+
+    public TiledGeojsonExporter(String crs, double tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+        }
+        this.crs = crs;
+        this.tileSize = tileSize;
+        this.toWgs84 = ThreadLocal.withInitial(() -> TransformationFactory.getCoordinateTransformation(crs, TransformationFactory.WGS84));
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4 || args.length > 5) {
+            System.err.println("Usage: TiledGeojsonExporter <crs> <network.xml> <schedule.xml|-> <outputDir> [tileSize]");
+            System.exit(1);
+        }
+        Network network = NetworkTools.readNetwork(args[1]);
+        TransitSchedule schedule = args[2].equals("-") ? null : ScheduleTools.readTransitSchedule(args[2]);
+        double tileSize = args.length == 5 ? Double.parseDouble(args[4]) : DEFAULT_TILE_SIZE;
+        new TiledGeojsonExporter(args[0], tileSize).write(network, schedule, args[3]);
+    }
+
+    /**
+     * Writes the tiles and index.json into the directory.
+     *
+     * @param schedule null to export the network only
+     */
+    public void write(Network network, TransitSchedule schedule, String outputDir) {
+        long start = System.currentTimeMillis();
+        Path directory = Path.of(outputDir);
+        List<TileEntry> entries = new ArrayList<>();
+
+        Link[] links = network.getLinks().values().toArray(new Link[0]);
+        Long2ObjectOpenHashMap<IntArrayList> linkTiles = new Long2ObjectOpenHashMap<>();
+        for (int i = 0; i < links.length; i++) {
+            bucket(linkTiles, tile(midpoint(links[i]))).add(i);
+        }
+        entries.addAll(writeTiles(directory, NETWORK, linkTiles, (tile, out) -> {
+            IntArrayList indices = linkTiles.get(tile);
+            for (int i = 0; i < indices.size(); i++) {
+                writeLink(out, links[indices.getInt(i)]);
+            }
+            return indices.size();
+        }));
+
+        if (schedule != null) {
+            TransitStopFacility[] stops = schedule.getFacilities().values().toArray(new TransitStopFacility[0]);
+            List<RouteLinks> routes = routeLinks(schedule, network);
+            // per tile: stop indices, and route pieces as (route, first link, last link) triples
+            Long2ObjectOpenHashMap<IntArrayList> stopTiles = new Long2ObjectOpenHashMap<>();
+            Long2ObjectOpenHashMap<IntArrayList> pieceTiles = new Long2ObjectOpenHashMap<>();
+            for (int i = 0; i < stops.length; i++) {
+                bucket(stopTiles, tile(stops[i].getCoord())).add(i);
+            }
+            for (int r = 0; r < routes.size(); r++) {
+                addPieces(pieceTiles, r, routes.get(r).links());
+            }
+            Long2ObjectOpenHashMap<IntArrayList> scheduleTiles = new Long2ObjectOpenHashMap<>();
+            stopTiles.keySet().forEach((long tile) -> bucket(scheduleTiles, tile));
+            pieceTiles.keySet().forEach((long tile) -> bucket(scheduleTiles, tile));
+
+            entries.addAll(writeTiles(directory, SCHEDULE, scheduleTiles, (tile, out) -> {
+                int features = 0;
+                IntArrayList stopIndices = stopTiles.get(tile);
+                if (stopIndices != null) {
+                    for (int i = 0; i < stopIndices.size(); i++) {
+                        writeStop(out, stops[stopIndices.getInt(i)]);
+                    }
+                    features += stopIndices.size();
+                }
+                IntArrayList pieces = pieceTiles.get(tile);
+                if (pieces != null) {
+                    for (int p = 0; p < pieces.size(); p += 3) {
+                        writeRoutePiece(out, routes.get(pieces.getInt(p)), pieces.getInt(p + 1), pieces.getInt(p + 2));
+                    }
+                    features += pieces.size() / 3;
+                }
+                return features;
+            }));
+        }
+
+        writeIndex(directory.resolve("index.json"), entries);
+        System.out.println("Wrote " + entries.size() + " GeoJSON tiles (" + tileSize + " m) to " + directory
+                + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    // ---------------------------------------------------------------- tiles
+
+    private record TileEntry(String layer, long tile, int features, double[] bbox) {
+    }
+
+    private record RouteLinks(TransitLine line, TransitRoute route, Link[] links) {
+    }
+
+    @FunctionalInterface
+    private interface TileWriter {
+        int write(long tile, JsonGenerator out) throws IOException;
+    }
+
+    private List<TileEntry> writeTiles(Path directory, String layer, Long2ObjectOpenHashMap<?> tiles, TileWriter writer) {
+        long[] keys = tiles.keySet().toLongArray();
+        // sorted: index.json lists the tiles in the same order every time
+        Arrays.sort(keys);
+        try {
+            Files.createDirectories(directory.resolve(layer));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        TileEntry[] entries = new TileEntry[keys.length];
+        IntStream.range(0, keys.length).parallel().forEach(i -> {
+            long tile = keys[i];
+            Path file = directory.resolve(layer).resolve(fileName(tile));
+            try (BufferedWriter out = IOUtils.getBufferedWriter(file.toString());
+                 JsonGenerator json = JSON.createGenerator(out)) {
+                json.writeStartObject();
+                json.writeStringField("type", "FeatureCollection");
+                json.writeArrayFieldStart("features");
+                int features = writer.write(tile, json);
+                json.writeEndArray();
+                json.writeEndObject();
+                entries[i] = new TileEntry(layer, tile, features, bbox(tile));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write " + file, e);
+            }
+        });
+        return Arrays.asList(entries);
+    }
+
+    private void writeIndex(Path file, List<TileEntry> entries) {
+        try (BufferedWriter out = IOUtils.getBufferedWriter(file.toString());
+             JsonGenerator json = JSON.createGenerator(out)) {
+            json.useDefaultPrettyPrinter();
+            json.writeStartObject();
+            json.writeStringField("crs", crs);
+            json.writeNumberField("tileSize", tileSize);
+            json.writeArrayFieldStart("tiles");
+            for (TileEntry entry : entries) {
+                json.writeStartObject();
+                json.writeStringField("layer", entry.layer());
+                json.writeStringField("file", entry.layer() + "/" + fileName(entry.tile()));
+                json.writeNumberField("column", column(entry.tile()));
+                json.writeNumberField("row", row(entry.tile()));
+                json.writeNumberField("features", entry.features());
+                json.writeArrayFieldStart("bbox");
+                for (double value : entry.bbox()) {
+                    json.writeNumber(round(value));
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + file, e);
+        }
+    }
+
+    private long tile(Coord coord) {
+        long column = (long) Math.floor(coord.getX() / tileSize);
+        long row = (long) Math.floor(coord.getY() / tileSize);
+        return column << 32 | row & 0xFFFFFFFFL;
+    }
+
+    private static int column(long tile) {
+        return (int) (tile >> 32);
+    }
+
+    private static int row(long tile) {
+        return (int) tile;
+    }
+
+    private static String fileName(long tile) {
+        return column(tile) + "_" + row(tile) + ".geojson";
+    }
+
+    private static IntArrayList bucket(Long2ObjectOpenHashMap<IntArrayList> tiles, long tile) {
+        IntArrayList bucket = tiles.get(tile);
+        if (bucket == null) {
+            bucket = new IntArrayList();
+            tiles.put(tile, bucket);
+        }
+        return bucket;
+    }
+
+    // WGS84 bounding box [minLon, minLat, maxLon, maxLat] of the tile's corners
+    private double[] bbox(long tile) {
+        double x0 = column(tile) * tileSize;
+        double y0 = row(tile) * tileSize;
+        double[] bbox = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int corner = 0; corner < 4; corner++) {
+            Coord wgs84 = toWgs84.get().transform(new Coord(x0 + (corner & 1) * tileSize, y0 + (corner >> 1) * tileSize));
+            bbox[0] = Math.min(bbox[0], wgs84.getX());
+            bbox[1] = Math.min(bbox[1], wgs84.getY());
+            bbox[2] = Math.max(bbox[2], wgs84.getX());
+            bbox[3] = Math.max(bbox[3], wgs84.getY());
+        }
+        return bbox;
+    }
+
+    // ---------------------------------------------------------------- schedule
+
+    private static List<RouteLinks> routeLinks(TransitSchedule schedule, Network network) {
+        List<RouteLinks> routes = new ArrayList<>();
+        for (TransitLine line : schedule.getTransitLines().values()) {
+            for (TransitRoute route : line.getRoutes().values()) {
+                NetworkRoute networkRoute = route.getRoute();
+                if (networkRoute == null) {
+                    continue;
+                }
+                List<Id<Link>> linkIds = new ArrayList<>(networkRoute.getLinkIds().size() + 2);
+                linkIds.add(networkRoute.getStartLinkId());
+                linkIds.addAll(networkRoute.getLinkIds());
+                linkIds.add(networkRoute.getEndLinkId());
+                // links missing in the network stay null and split the route
+                Link[] links = new Link[linkIds.size()];
+                for (int i = 0; i < links.length; i++) {
+                    links[i] = network.getLinks().get(linkIds.get(i));
+                }
+                routes.add(new RouteLinks(line, route, links));
+            }
+        }
+        return routes;
+    }
+
+    // a piece is a run of consecutive, connected links whose midpoints lie in the same tile
+    private void addPieces(Long2ObjectOpenHashMap<IntArrayList> pieceTiles, int route, Link[] links) {
+        int first = -1;
+        long pieceTile = 0;
+        for (int i = 0; i <= links.length; i++) {
+            Link link = i < links.length ? links[i] : null;
+            long tile = link != null ? tile(midpoint(link)) : 0;
+            boolean continues = first >= 0 && link != null && tile == pieceTile
+                    && links[i - 1].getToNode() == link.getFromNode();
+            if (first >= 0 && !continues) {
+                IntArrayList pieces = bucket(pieceTiles, pieceTile);
+                pieces.add(route);
+                pieces.add(first);
+                pieces.add(i - 1);
+                first = -1;
+            }
+            if (first < 0 && link != null) {
+                first = i;
+                pieceTile = tile;
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- features
+
+    private void writeLink(JsonGenerator json, Link link) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("type", "Feature");
+        json.writeObjectFieldStart("geometry");
+        json.writeStringField("type", "LineString");
+        json.writeArrayFieldStart("coordinates");
+        writeCoord(json, link.getFromNode().getCoord());
+        writeCoord(json, link.getToNode().getCoord());
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeObjectFieldStart("properties");
+        json.writeStringField("id", link.getId().toString());
+        json.writeStringField("from", link.getFromNode().getId().toString());
+        json.writeStringField("to", link.getToNode().getId().toString());
+        json.writeNumberField("length", link.getLength());
+        json.writeNumberField("freespeed", link.getFreespeed());
+        json.writeNumberField("capacity", link.getCapacity());
+        json.writeNumberField("lanes", link.getNumberOfLanes());
+        json.writeStringField("modes", String.join(",", link.getAllowedModes()));
+        long osmId = OsmIdLinkIndex.osmId(link);
+        if (osmId != OsmIdLinkIndex.NO_OSM_ID) {
+            json.writeNumberField("osmID", osmId);
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private void writeStop(JsonGenerator json, TransitStopFacility stop) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("type", "Feature");
+        json.writeObjectFieldStart("geometry");
+        json.writeStringField("type", "Point");
+        json.writeFieldName("coordinates");
+        writeCoord(json, stop.getCoord());
+        json.writeEndObject();
+        json.writeObjectFieldStart("properties");
+        json.writeStringField("stop", stop.getId().toString());
+        if (stop.getName() != null) {
+            json.writeStringField("name", stop.getName());
+        }
+        if (stop.getLinkId() != null) {
+            json.writeStringField("link", stop.getLinkId().toString());
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private void writeRoutePiece(JsonGenerator json, RouteLinks route, int first, int last) throws IOException {
+        Link[] links = route.links();
+        json.writeStartObject();
+        json.writeStringField("type", "Feature");
+        json.writeObjectFieldStart("geometry");
+        json.writeStringField("type", "LineString");
+        json.writeArrayFieldStart("coordinates");
+        writeCoord(json, links[first].getFromNode().getCoord());
+        for (int i = first; i <= last; i++) {
+            writeCoord(json, links[i].getToNode().getCoord());
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+        json.writeObjectFieldStart("properties");
+        json.writeStringField("line", route.line().getId().toString());
+        json.writeStringField("route", route.route().getId().toString());
+        json.writeStringField("mode", route.route().getTransportMode());
+        json.writeNumberField("firstLink", first);
+        json.writeNumberField("lastLink", last);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private void writeCoord(JsonGenerator json, Coord coord) throws IOException {
+        Coord wgs84 = toWgs84.get().transform(coord);
+        json.writeStartArray();
+        json.writeNumber(round(wgs84.getX()));
+        json.writeNumber(round(wgs84.getY()));
+        json.writeEndArray();
+    }
+
+    private static Coord midpoint(Link link) {
+        Coord from = link.getFromNode().getCoord();
+        Coord to = link.getToNode().getCoord();
+        return new Coord((from.getX() + to.getX()) / 2, (from.getY() + to.getY()) / 2);
+    }
+
+    // 7 decimals: about 1 cm
+    private static double round(double degrees) {
+        return Math.round(degrees * 1e7) / 1e7;
+    }
+}
@@ -0,0 +1,534 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.example.pt.SnapshotColumns.AttributeColumns;
+import org.example.pt.SnapshotColumns.StringTable;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.utils.misc.OptionalTime;
+import org.matsim.pt.transitSchedule.api.ChainedDeparture;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitStopArea;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.utils.objectattributes.attributable.Attributable;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.pt.SnapshotColumns.readDoubles;
+import static org.example.pt.SnapshotColumns.readInts;
+import static org.example.pt.SnapshotColumns.readStamp;
+import static org.example.pt.SnapshotColumns.readString;
+import static org.example.pt.SnapshotColumns.writeInts;
+import static org.example.pt.SnapshotColumns.writeStamp;
+import static org.example.pt.SnapshotColumns.writeString;
+
+/**
+ * Binary snapshot cache for transit schedule files, the schedule counterpart of {@link NetworkSnapshot}.
+ *
+ * The snapshot ({@code <schedule file>.snapshot}) is keyed by the schedule file and the network file the schedule was
+ * mapped to, since stop facilities and network routes refer to that network's links. As for networks, the sizes and
+ * modification times of both files are checked first; the files are only hashed (once per run, see
+ * {@link ContentHash}) when a stamp differs. When either file changed, the schedule is parsed from XML again and the
+ * snapshot is rewritten.
+ *
+ * Stops, route stops and departures are stored as columns over all routes, with all ids, names and modes interned in
+ * one string table. Stop areas, minimal transfer times, chained departures and attributes (same types as
+ * {@link NetworkSnapshot}) are kept.
+ *
+ * Only the parsing of the schedule is cached. SwissRailRaptorData is still built from the schedule and network at
+ * startup: its arrays are internal to SwissRailRaptor and depend on the raptor config, so they cannot be restored
+ * from a file.
+ *
+ * Disable with -DscheduleSnapshot=false.
+ */
+public final class TransitScheduleSnapshot {
+
+    private static final long MAGIC = 0x4D415453494D5453L; // "MATSIMTS"
+    private static final int VERSION = 3;
+    private static final String SUFFIX = ".snapshot";
+
+    private static final int NONE = -1;
+
+    private static final byte AWAIT_DEPARTURE = 1;
+    private static final byte ALLOW_BOARDING = 2;
+    private static final byte ALLOW_ALIGHTING = 4;
+
+    private TransitScheduleSnapshot() {
+    }
+
+    public static boolean isEnabled() {
+        return Boolean.parseBoolean(System.getProperty("scheduleSnapshot", "true"));
+    }
+
+    /**
+     * Reads the schedule file into the (empty) transit schedule of the scenario, from its snapshot if a valid one exists.
+     *
+     * @param networkFile network the schedule was mapped to, part of the snapshot key; may be null
+     */
+    public static void read(String scheduleFile, String networkFile, Scenario scenario) {
+        TransitSchedule target = scenario.getTransitSchedule();
+        if (!isEnabled()) {
+            new TransitScheduleReader(scenario).readFile(scheduleFile);
+            return;
+        }
+
+        ContentHash.Stamp scheduleStamp = ContentHash.Stamp.of(scheduleFile);
+        ContentHash.Stamp networkStamp = networkFile == null ? ContentHash.Stamp.NONE : ContentHash.Stamp.of(networkFile);
+        Path snapshot = Path.of(scheduleFile + SUFFIX);
+
+        if (Files.isRegularFile(snapshot)) {
+            try {
+                if (load(snapshot, scheduleFile, networkFile, scheduleStamp, networkStamp, target)) {
+                    System.out.println("Transit schedule read from snapshot " + snapshot);
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Ignoring unreadable transit schedule snapshot " + snapshot + ": " + e.getMessage());
+                clear(target);
+            }
+        }
+
+        new TransitScheduleReader(scenario).readFile(scheduleFile);
+
+        try {
+            write(target, scheduleStamp, networkStamp, key(scheduleFile, networkFile), snapshot);
+        } catch (UnsupportedOperationException e) {
+            System.out.println("Transit schedule snapshot not written: " + e.getMessage());
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("Could not write transit schedule snapshot " + snapshot + ": " + e.getMessage());
+        }
+    }
+
+    private static String key(String scheduleFile, String networkFile) {
+        return ContentHash.of(ContentHash.ofFile(scheduleFile), networkFile == null ? "" : ContentHash.ofFile(networkFile));
+    }
+
+    // ---------------------------------------------------------------- write
+
+    static void write(TransitSchedule schedule, ContentHash.Stamp scheduleStamp, ContentHash.Stamp networkStamp, String key,
+                      Path snapshot) throws IOException {
+        StringTable strings = new StringTable();
+
+        List<TransitStopFacility> stops = new ArrayList<>(schedule.getFacilities().values());
+        Object2IntOpenHashMap<Id<TransitStopFacility>> stopIndex = new Object2IntOpenHashMap<>(stops.size());
+        for (int i = 0; i < stops.size(); i++) {
+            stopIndex.put(stops.get(i).getId(), i);
+        }
+
+        List<TransitLine> lines = new ArrayList<>(schedule.getTransitLines().values());
+        List<TransitRoute> routes = new ArrayList<>();
+        for (TransitLine line : lines) {
+            routes.addAll(line.getRoutes().values());
+        }
+        List<TransitRouteStop> routeStops = new ArrayList<>();
+        List<Departure> departures = new ArrayList<>();
+        for (TransitRoute route : routes) {
+            routeStops.addAll(route.getStops());
+            departures.addAll(route.getDepartures().values());
+        }
+
+        // encode attributes first, they add their keys and string values to the string table
+        AttributeColumns scheduleAttributes = AttributeColumns.encode(List.of(schedule.getAttributes()), strings);
+        AttributeColumns stopAttributes = AttributeColumns.encode(attributesOf(stops), strings);
+        AttributeColumns lineAttributes = AttributeColumns.encode(attributesOf(lines), strings);
+        AttributeColumns routeAttributes = AttributeColumns.encode(attributesOf(routes), strings);
+        AttributeColumns departureAttributes = AttributeColumns.encode(attributesOf(departures), strings);
+
+        List<String> transferFrom = new ArrayList<>();
+        List<String> transferTo = new ArrayList<>();
+        List<Double> transferSeconds = new ArrayList<>();
+        MinimalTransferTimes.MinimalTransferTimesIterator transfers = schedule.getMinimalTransferTimes().iterator();
+        while (transfers.hasNext()) {
+            transfers.next();
+            transferFrom.add(transfers.getFromStopId().toString());
+            transferTo.add(transfers.getToStopId().toString());
+            transferSeconds.add(transfers.getSeconds());
+        }
+
+        Path tmp = Path.of(snapshot + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeInt(VERSION);
+            writeStamp(out, scheduleStamp);
+            writeStamp(out, networkStamp);
+            writeString(out, key);
+
+            // the string table has to be complete before it is written, so all string columns are built up front
+            int[] stopIds = new int[stops.size()];
+            int[] stopLinks = new int[stops.size()];
+            int[] stopNames = new int[stops.size()];
+            int[] stopAreas = new int[stops.size()];
+            for (int i = 0; i < stops.size(); i++) {
+                TransitStopFacility stop = stops.get(i);
+                stopIds[i] = strings.index(stop.getId().toString());
+                stopLinks[i] = indexOrNone(strings, stop.getLinkId());
+                stopNames[i] = indexOrNone(strings, stop.getName());
+                stopAreas[i] = indexOrNone(strings, stop.getStopAreaId());
+            }
+            int[] transferFromIds = transferFrom.stream().mapToInt(strings::index).toArray();
+            int[] transferToIds = transferTo.stream().mapToInt(strings::index).toArray();
+
+            int[] lineIds = new int[lines.size()];
+            int[] lineNames = new int[lines.size()];
+            int[] lineRouteCounts = new int[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                lineIds[i] = strings.index(lines.get(i).getId().toString());
+                lineNames[i] = indexOrNone(strings, lines.get(i).getName());
+                lineRouteCounts[i] = lines.get(i).getRoutes().size();
+            }
+
+            int[] routeIds = new int[routes.size()];
+            int[] routeModes = new int[routes.size()];
+            int[] routeDescriptions = new int[routes.size()];
+            int[] routeLinkCounts = new int[routes.size()];
+            int[] routeStopCounts = new int[routes.size()];
+            int[] routeDepartureCounts = new int[routes.size()];
+            List<Integer> routeLinks = new ArrayList<>();
+            for (int i = 0; i < routes.size(); i++) {
+                TransitRoute route = routes.get(i);
+                routeIds[i] = strings.index(route.getId().toString());
+                routeModes[i] = strings.index(route.getTransportMode());
+                routeDescriptions[i] = indexOrNone(strings, route.getDescription());
+                routeStopCounts[i] = route.getStops().size();
+                routeDepartureCounts[i] = route.getDepartures().size();
+                NetworkRoute networkRoute = route.getRoute();
+                if (networkRoute == null) {
+                    routeLinkCounts[i] = NONE;
+                } else {
+                    routeLinks.add(strings.index(networkRoute.getStartLinkId().toString()));
+                    for (Id<Link> linkId : networkRoute.getLinkIds()) {
+                        routeLinks.add(strings.index(linkId.toString()));
+                    }
+                    routeLinks.add(strings.index(networkRoute.getEndLinkId().toString()));
+                    routeLinkCounts[i] = networkRoute.getLinkIds().size() + 2;
+                }
+            }
+
+            int[] departureIds = new int[departures.size()];
+            int[] departureVehicles = new int[departures.size()];
+            int[] chainedCounts = new int[departures.size()];
+            List<Integer> chained = new ArrayList<>();
+            for (int i = 0; i < departures.size(); i++) {
+                Departure departure = departures.get(i);
+                departureIds[i] = strings.index(departure.getId().toString());
+                departureVehicles[i] = indexOrNone(strings, departure.getVehicleId());
+                // line, route and departure id of every chained departure
+                for (ChainedDeparture next : departure.getChainedDepartures()) {
+                    chained.add(strings.index(next.getChainedTransitLineId().toString()));
+                    chained.add(strings.index(next.getChainedRouteId().toString()));
+                    chained.add(strings.index(next.getChainedDepartureId().toString()));
+                    chainedCounts[i]++;
+                }
+            }
+
+            out.writeInt(strings.size());
+            for (String s : strings.values) {
+                writeString(out, s);
+            }
+            scheduleAttributes.write(out);
+
+            out.writeInt(stops.size());
+            writeInts(out, stopIds);
+            for (TransitStopFacility stop : stops) {
+                out.writeDouble(stop.getCoord().getX());
+            }
+            for (TransitStopFacility stop : stops) {
+                out.writeDouble(stop.getCoord().getY());
+            }
+            for (TransitStopFacility stop : stops) {
+                out.writeDouble(stop.getCoord().hasZ() ? stop.getCoord().getZ() : Double.NaN);
+            }
+            for (TransitStopFacility stop : stops) {
+                out.writeByte(stop.getIsBlockingLane() ? 1 : 0);
+            }
+            writeInts(out, stopLinks);
+            writeInts(out, stopNames);
+            writeInts(out, stopAreas);
+            stopAttributes.write(out);
+
+            out.writeInt(transferFromIds.length);
+            writeInts(out, transferFromIds);
+            writeInts(out, transferToIds);
+            for (double seconds : transferSeconds) {
+                out.writeDouble(seconds);
+            }
+
+            out.writeInt(lines.size());
+            writeInts(out, lineIds);
+            writeInts(out, lineNames);
+            writeInts(out, lineRouteCounts);
+            lineAttributes.write(out);
+
+            out.writeInt(routes.size());
+            writeInts(out, routeIds);
+            writeInts(out, routeModes);
+            writeInts(out, routeDescriptions);
+            writeInts(out, routeLinkCounts);
+            out.writeInt(routeLinks.size());
+            for (int link : routeLinks) {
+                out.writeInt(link);
+            }
+            writeInts(out, routeStopCounts);
+            writeInts(out, routeDepartureCounts);
+            routeAttributes.write(out);
+
+            out.writeInt(routeStops.size());
+            for (TransitRouteStop stop : routeStops) {
+                out.writeInt(stopIndex.getInt(stop.getStopFacility().getId()));
+            }
+            for (TransitRouteStop stop : routeStops) {
+                out.writeDouble(stop.getArrivalOffset().orElse(Double.NaN));
+            }
+            for (TransitRouteStop stop : routeStops) {
+                out.writeDouble(stop.getDepartureOffset().orElse(Double.NaN));
+            }
+            for (TransitRouteStop stop : routeStops) {
+                out.writeByte((stop.isAwaitDepartureTime() ? AWAIT_DEPARTURE : 0)
+                        | (stop.isAllowBoarding() ? ALLOW_BOARDING : 0)
+                        | (stop.isAllowAlighting() ? ALLOW_ALIGHTING : 0));
+            }
+
+            out.writeInt(departures.size());
+            writeInts(out, departureIds);
+            for (Departure departure : departures) {
+                out.writeDouble(departure.getDepartureTime());
+            }
+            writeInts(out, departureVehicles);
+            departureAttributes.write(out);
+            writeInts(out, chainedCounts);
+            out.writeInt(chained.size());
+            for (int id : chained) {
+                out.writeInt(id);
+            }
+        }
+        Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // ---------------------------------------------------------------- read
+
+    // Returns false if the snapshot belongs to other versions of the schedule or network file; the files are only
+    // hashed if a stamp differs from the header
+    static boolean load(Path snapshot, String scheduleFile, String networkFile, ContentHash.Stamp scheduleStamp,
+                        ContentHash.Stamp networkStamp, TransitSchedule target) throws IOException {
+        MappedByteBuffer buffer = SnapshotColumns.map(snapshot);
+        if (buffer == null || buffer.getLong() != MAGIC || buffer.getInt() != VERSION) {
+            return false;
+        }
+        ContentHash.Stamp snapshotScheduleStamp = readStamp(buffer);
+        ContentHash.Stamp snapshotNetworkStamp = readStamp(buffer);
+        String key = readString(buffer);
+        if (!snapshotScheduleStamp.equals(scheduleStamp) || !snapshotNetworkStamp.equals(networkStamp)) {
+            if (snapshotScheduleStamp.size() != scheduleStamp.size() || snapshotNetworkStamp.size() != networkStamp.size()
+                    || !key(scheduleFile, networkFile).equals(key)) {
+                return false;
+            }
+            SnapshotColumns.restamp(snapshot, scheduleStamp, networkStamp);
+        }
+
+        String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+        AttributeColumns.read(buffer, 1).apply(0, target.getAttributes(), strings);
+
+        TransitScheduleFactory factory = target.getFactory();
+
+        int stopCount = buffer.getInt();
+        int[] stopIds = readInts(buffer, stopCount);
+        double[] x = readDoubles(buffer, stopCount);
+        double[] y = readDoubles(buffer, stopCount);
+        double[] z = readDoubles(buffer, stopCount);
+        byte[] blocking = new byte[stopCount];
+        buffer.get(blocking);
+        int[] stopLinks = readInts(buffer, stopCount);
+        int[] stopNames = readInts(buffer, stopCount);
+        int[] stopAreas = readInts(buffer, stopCount);
+        AttributeColumns stopAttributes = AttributeColumns.read(buffer, stopCount);
+        TransitStopFacility[] stops = new TransitStopFacility[stopCount];
+        for (int i = 0; i < stopCount; i++) {
+            Coord coord = Double.isNaN(z[i]) ? new Coord(x[i], y[i]) : new Coord(x[i], y[i], z[i]);
+            TransitStopFacility stop = factory.createTransitStopFacility(
+                    Id.create(strings[stopIds[i]], TransitStopFacility.class), coord, blocking[i] != 0);
+            if (stopLinks[i] != NONE) {
+                stop.setLinkId(Id.createLinkId(strings[stopLinks[i]]));
+            }
+            if (stopNames[i] != NONE) {
+                stop.setName(strings[stopNames[i]]);
+            }
+            if (stopAreas[i] != NONE) {
+                stop.setStopAreaId(Id.create(strings[stopAreas[i]], TransitStopArea.class));
+            }
+            stopAttributes.apply(i, stop.getAttributes(), strings);
+            target.addStopFacility(stop);
+            stops[i] = stop;
+        }
+
+        int transferCount = buffer.getInt();
+        int[] transferFrom = readInts(buffer, transferCount);
+        int[] transferTo = readInts(buffer, transferCount);
+        double[] transferSeconds = readDoubles(buffer, transferCount);
+        for (int i = 0; i < transferCount; i++) {
+            target.getMinimalTransferTimes().set(Id.create(strings[transferFrom[i]], TransitStopFacility.class),
+                    Id.create(strings[transferTo[i]], TransitStopFacility.class), transferSeconds[i]);
+        }
+
+        int lineCount = buffer.getInt();
+        int[] lineIds = readInts(buffer, lineCount);
+        int[] lineNames = readInts(buffer, lineCount);
+        int[] lineRouteCounts = readInts(buffer, lineCount);
+        AttributeColumns lineAttributes = AttributeColumns.read(buffer, lineCount);
+
+        int routeCount = buffer.getInt();
+        int[] routeIds = readInts(buffer, routeCount);
+        int[] routeModes = readInts(buffer, routeCount);
+        int[] routeDescriptions = readInts(buffer, routeCount);
+        int[] routeLinkCounts = readInts(buffer, routeCount);
+        int[] routeLinks = readInts(buffer, buffer.getInt());
+        int[] routeStopCounts = readInts(buffer, routeCount);
+        int[] routeDepartureCounts = readInts(buffer, routeCount);
+        AttributeColumns routeAttributes = AttributeColumns.read(buffer, routeCount);
+
+        int routeStopCount = buffer.getInt();
+        int[] routeStopFacilities = readInts(buffer, routeStopCount);
+        double[] arrivals = readDoubles(buffer, routeStopCount);
+        double[] departureOffsets = readDoubles(buffer, routeStopCount);
+        byte[] flags = new byte[routeStopCount];
+        buffer.get(flags);
+
+        int departureCount = buffer.getInt();
+        int[] departureIds = readInts(buffer, departureCount);
+        double[] departureTimes = readDoubles(buffer, departureCount);
+        int[] departureVehicles = readInts(buffer, departureCount);
+        AttributeColumns departureAttributes = AttributeColumns.read(buffer, departureCount);
+        int[] chainedCounts = readInts(buffer, departureCount);
+        int[] chained = readInts(buffer, buffer.getInt());
+
+        int route = 0;
+        int linkPos = 0;
+        int stopPos = 0;
+        int departurePos = 0;
+        int chainedPos = 0;
+        for (int l = 0; l < lineCount; l++) {
+            TransitLine line = factory.createTransitLine(Id.create(strings[lineIds[l]], TransitLine.class));
+            if (lineNames[l] != NONE) {
+                line.setName(strings[lineNames[l]]);
+            }
+            lineAttributes.apply(l, line.getAttributes(), strings);
+
+            for (int r = 0; r < lineRouteCounts[l]; r++, route++) {
+                NetworkRoute networkRoute = null;
+                if (routeLinkCounts[route] != NONE) {
+                    int n = routeLinkCounts[route];
+                    List<Id<Link>> linkIds = new ArrayList<>(n - 2);
+                    for (int i = 1; i < n - 1; i++) {
+                        linkIds.add(Id.createLinkId(strings[routeLinks[linkPos + i]]));
+                    }
+                    networkRoute = RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId(strings[routeLinks[linkPos]]),
+                            linkIds, Id.createLinkId(strings[routeLinks[linkPos + n - 1]]));
+                    linkPos += n;
+                }
+
+                List<TransitRouteStop> routeStops = new ArrayList<>(routeStopCounts[route]);
+                for (int s = 0; s < routeStopCounts[route]; s++, stopPos++) {
+                    TransitRouteStop stop = factory.createTransitRouteStop(stops[routeStopFacilities[stopPos]],
+                            optionalTime(arrivals[stopPos]), optionalTime(departureOffsets[stopPos]));
+                    stop.setAwaitDepartureTime((flags[stopPos] & AWAIT_DEPARTURE) != 0);
+                    stop.setAllowBoarding((flags[stopPos] & ALLOW_BOARDING) != 0);
+                    stop.setAllowAlighting((flags[stopPos] & ALLOW_ALIGHTING) != 0);
+                    routeStops.add(stop);
+                }
+
+                TransitRoute transitRoute = factory.createTransitRoute(Id.create(strings[routeIds[route]], TransitRoute.class),
+                        networkRoute, routeStops, strings[routeModes[route]]);
+                if (routeDescriptions[route] != NONE) {
+                    transitRoute.setDescription(strings[routeDescriptions[route]]);
+                }
+                routeAttributes.apply(route, transitRoute.getAttributes(), strings);
+
+                for (int d = 0; d < routeDepartureCounts[route]; d++, departurePos++) {
+                    Departure departure = factory.createDeparture(
+                            Id.create(strings[departureIds[departurePos]], Departure.class), departureTimes[departurePos]);
+                    if (departureVehicles[departurePos] != NONE) {
+                        departure.setVehicleId(Id.create(strings[departureVehicles[departurePos]], Vehicle.class));
+                    }
+                    departureAttributes.apply(departurePos, departure.getAttributes(), strings);
+                    if (chainedCounts[departurePos] > 0) {
+                        List<ChainedDeparture> chainedDepartures = new ArrayList<>(chainedCounts[departurePos]);
+                        for (int c = 0; c < chainedCounts[departurePos]; c++, chainedPos += 3) {
+                            chainedDepartures.add(factory.createChainedDeparture(
+                                    Id.create(strings[chained[chainedPos]], TransitLine.class),
+                                    Id.create(strings[chained[chainedPos + 1]], TransitRoute.class),
+                                    Id.create(strings[chained[chainedPos + 2]], Departure.class)));
+                        }
+                        departure.setChainedDepartures(chainedDepartures);
+                    }
+                    transitRoute.addDeparture(departure);
+                }
+                line.addRoute(transitRoute);
+            }
+            target.addTransitLine(line);
+        }
+        return true;
+    }
+
+    private static void clear(TransitSchedule schedule) {
+        for (TransitLine line : new ArrayList<>(schedule.getTransitLines().values())) {
+            schedule.removeTransitLine(line);
+        }
+        for (TransitStopFacility stop : new ArrayList<>(schedule.getFacilities().values())) {
+            schedule.removeStopFacility(stop);
+        }
+        List<Id<TransitStopFacility>[]> transfers = new ArrayList<>();
+        MinimalTransferTimes.MinimalTransferTimesIterator iterator = schedule.getMinimalTransferTimes().iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            @SuppressWarnings("unchecked")
+            Id<TransitStopFacility>[] pair = new Id[]{iterator.getFromStopId(), iterator.getToStopId()};
+            transfers.add(pair);
+        }
+        for (Id<TransitStopFacility>[] pair : transfers) {
+            schedule.getMinimalTransferTimes().remove(pair[0], pair[1]);
+        }
+        for (String key : new ArrayList<>(schedule.getAttributes().getAsMap().keySet())) {
+            schedule.getAttributes().removeAttribute(key);
+        }
+    }
+
+    private static List<Attributes> attributesOf(List<? extends Attributable> entities) {
+        List<Attributes> attributes = new ArrayList<>(entities.size());
+        for (Attributable entity : entities) {
+            attributes.add(entity.getAttributes());
+        }
+        return attributes;
+    }
+
+    private static int indexOrNone(StringTable strings, Object value) {
+        return value == null ? NONE : strings.index(value.toString());
+    }
+
+    private static OptionalTime optionalTime(double seconds) {
+        return Double.isNaN(seconds) ? OptionalTime.undefined() : OptionalTime.defined(seconds);
+    }
+}
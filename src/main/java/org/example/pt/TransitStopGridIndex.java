@@ -0,0 +1,233 @@
+package org.example.pt;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Uniform grid over the stop facilities of a transit schedule (projected coordinates, e.g. EPSG:27700).
+ *
+ * Stops are bucketed into square cells and stored in packed arrays (cell offsets + stop indices, x/y columns), so
+ * a radius query only visits the cells overlapping the circle. Optionally only stops served by routes of the given
+ * transit modes are indexed (one index per access mode or stop filter).
+ *
+ * {@link #countStops} is used with a few fixed radii (the access radius classes), so the stops within the radius of
+ * any point of a cell are computed once per cell and radius; a count then scans one packed list with the exact
+ * distance test. Thread-safe.
+ */
+public final class TransitStopGridIndex {
+
+    private final double cellSize;
+    private final double minX;
+    private final double minY;
+    private final int columns;
+    private final int rows;
+
+    private final TransitStopFacility[] stops;
+    private final double[] x;
+    private final double[] y;
+    // stops of cell c are cellStops[cellStart[c] .. cellStart[c + 1])
+    private final int[] cellStart;
+    private final int[] cellStops;
+    // radius → per cell the stops within the radius of any point of the cell, filled on first use
+    private final Map<Double, AtomicReferenceArray<int[]>> candidatesByRadius = new ConcurrentHashMap<>();
+
+    /**
+     * @param transitModes only index stops served by a route of one of these modes; null for all stops
+     */
+    public TransitStopGridIndex(TransitSchedule schedule, Set<String> transitModes, double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size must be positive: " + cellSize);
+        }
+        this.cellSize = cellSize;
+        this.stops = selectStops(schedule, transitModes).toArray(new TransitStopFacility[0]);
+        this.x = new double[stops.length];
+        this.y = new double[stops.length];
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < stops.length; i++) {
+            Coord coord = stops[i].getCoord();
+            x[i] = coord.getX();
+            y[i] = coord.getY();
+            minX = Math.min(minX, x[i]);
+            minY = Math.min(minY, y[i]);
+            maxX = Math.max(maxX, x[i]);
+            maxY = Math.max(maxY, y[i]);
+        }
+        if (stops.length == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        this.minX = minX;
+        this.minY = minY;
+        this.columns = (int) ((maxX - minX) / cellSize) + 1;
+        this.rows = (int) ((maxY - minY) / cellSize) + 1;
+
+        // counting sort of the stops by cell
+        this.cellStart = new int[columns * rows + 1];
+        int[] cellOf = new int[stops.length];
+        for (int i = 0; i < stops.length; i++) {
+            cellOf[i] = cell(column(x[i]), row(y[i]));
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        this.cellStops = new int[stops.length];
+        int[] fill = new int[columns * rows];
+        for (int i = 0; i < stops.length; i++) {
+            cellStops[cellStart[cellOf[i]] + fill[cellOf[i]]++] = i;
+        }
+    }
+
+    public int size() {
+        return stops.length;
+    }
+
+    /** All indexed stops within {@code radius} of the coordinate. */
+    public List<TransitStopFacility> findStops(Coord coord, double radius) {
+        List<TransitStopFacility> result = new ArrayList<>();
+        double r2 = radius * radius;
+        int c0 = Math.max(0, column(coord.getX() - radius));
+        int c1 = Math.min(columns - 1, column(coord.getX() + radius));
+        int r0 = Math.max(0, row(coord.getY() - radius));
+        int r1 = Math.min(rows - 1, row(coord.getY() + radius));
+        for (int row = r0; row <= r1; row++) {
+            for (int column = c0; column <= c1; column++) {
+                int cell = cell(column, row);
+                for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                    int s = cellStops[p];
+                    double dx = x[s] - coord.getX();
+                    double dy = y[s] - coord.getY();
+                    if (dx * dx + dy * dy <= r2) {
+                        result.add(stops[s]);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Number of indexed stops within {@code radius} of the coordinate, stops counting at {@code limit}. */
+    public int countStops(Coord coord, double radius, int limit) {
+        int count = 0;
+        double r2 = radius * radius;
+        int[] candidates = cellCandidates(coord, radius);
+        if (candidates != null) {
+            for (int s : candidates) {
+                double dx = x[s] - coord.getX();
+                double dy = y[s] - coord.getY();
+                if (dx * dx + dy * dy <= r2 && ++count >= limit) {
+                    return count;
+                }
+            }
+            return count;
+        }
+        int c0 = Math.max(0, column(coord.getX() - radius));
+        int c1 = Math.min(columns - 1, column(coord.getX() + radius));
+        int r0 = Math.max(0, row(coord.getY() - radius));
+        int r1 = Math.min(rows - 1, row(coord.getY() + radius));
+        for (int row = r0; row <= r1; row++) {
+            for (int column = c0; column <= c1; column++) {
+                int cell = cell(column, row);
+                for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                    int s = cellStops[p];
+                    double dx = x[s] - coord.getX();
+                    double dy = y[s] - coord.getY();
+                    if (dx * dx + dy * dy <= r2 && ++count >= limit) {
+                        return count;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    // null for coordinates outside of the grid, those use the uncached lookup
+    private int[] cellCandidates(Coord coord, double radius) {
+        int column = column(coord.getX());
+        int row = row(coord.getY());
+        if (column < 0 || column >= columns || row < 0 || row >= rows) {
+            return null;
+        }
+        AtomicReferenceArray<int[]> cells = candidatesByRadius.computeIfAbsent(radius, r -> new AtomicReferenceArray<>(columns * rows));
+        int cell = cell(column, row);
+        int[] candidates = cells.get(cell);
+        if (candidates == null) {
+            // computed at most a few times concurrently, all results are equal
+            candidates = computeCandidates(column, row, radius);
+            cells.set(cell, candidates);
+        }
+        return candidates;
+    }
+
+    // stops within the radius of the cell's rectangle
+    private int[] computeCandidates(int column, int row, double radius) {
+        double cellMinX = minX + column * cellSize;
+        double cellMinY = minY + row * cellSize;
+        double r2 = radius * radius;
+        int reach = (int) Math.ceil(radius / cellSize);
+        IntArrayList result = new IntArrayList();
+        for (int r = Math.max(0, row - reach); r <= Math.min(rows - 1, row + reach); r++) {
+            for (int c = Math.max(0, column - reach); c <= Math.min(columns - 1, column + reach); c++) {
+                int cell = cell(c, r);
+                for (int p = cellStart[cell]; p < cellStart[cell + 1]; p++) {
+                    int s = cellStops[p];
+                    double dx = Math.max(0, Math.max(cellMinX - x[s], x[s] - (cellMinX + cellSize)));
+                    double dy = Math.max(0, Math.max(cellMinY - y[s], y[s] - (cellMinY + cellSize)));
+                    if (dx * dx + dy * dy <= r2) {
+                        result.add(s);
+                    }
+                }
+            }
+        }
+        return result.toIntArray();
+    }
+
+    private int column(double px) {
+        return (int) Math.floor((px - minX) / cellSize);
+    }
+
+    private int row(double py) {
+        return (int) Math.floor((py - minY) / cellSize);
+    }
+
+    private int cell(int column, int row) {
+        return row * columns + column;
+    }
+
+    private static List<TransitStopFacility> selectStops(TransitSchedule schedule, Set<String> transitModes) {
+        if (transitModes == null) {
+            return new ArrayList<>(schedule.getFacilities().values());
+        }
+        Set<TransitStopFacility> served = new HashSet<>();
+        for (TransitLine line : schedule.getTransitLines().values()) {
+            for (TransitRoute route : line.getRoutes().values()) {
+                if (transitModes.contains(route.getTransportMode())) {
+                    for (TransitRouteStop stop : route.getStops()) {
+                        served.add(stop.getStopFacility());
+                    }
+                }
+            }
+        }
+        List<TransitStopFacility> result = new ArrayList<>();
+        for (TransitStopFacility stop : schedule.getFacilities().values()) {
+            if (served.contains(stop)) {
+                result.add(stop); // keep schedule order
+            }
+        }
+        return result;
+    }
+}
@@ -4,94 +4,120 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.network.Node;
-import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.io.NetworkWriter;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.IntStream;
 
 public class preparePTNetwork {
 
+    public static final double DEFAULT_SNAP_TOLERANCE = 2.0;
+    // max. distance (m) of a tram segment's end points from the base link it is embedded into
+    private static final double EMBEDDING_OFFSET = 10.0;
+
     private static final String example = "pt2matsim/";
     private static final String external = "input/mito/trafficAssignment/";
     private static final String input = example + "input/";
     private static final String output = example + "output/";
 
     public static void main(String[] args) {
-        Network baseNetwork = NetworkUtils.readNetwork(external + "network_base.xml");
-        Network tramNetwork = NetworkUtils.readNetwork(input + "greater_manchester_metrolink_matsim_network.xml.gz");  // <-- the NEW file with osmID
+        Network[] networks = ParallelInputLoader.readNetworks(
+                external + "network_base.xml",
+                input + "greater_manchester_metrolink_matsim_network.xml.gz");  // <-- the NEW file with osmID
+        Network baseNetwork = networks[0];
+        Network tramNetwork = networks[1];
 
         mergeTramNetworkIntoBase(baseNetwork, tramNetwork);
 
-        NetworkUtils.writeNetwork(baseNetwork, output + "network_with_tramLinks.xml.gz");
+        // islands of the tram subnetwork make the schedule mapping fall back to artificial links:
+        // -Dconnectivity=report (default) | prune | repair for the modes in -DconnectivityModes (default tram)
+        checkConnectivity(baseNetwork, System.getProperty("connectivity", "report"),
+                Set.of(System.getProperty("connectivityModes", "tram").split(",")),
+                Double.parseDouble(System.getProperty("connectivityMaxDistance", "200")));
+
+        BlockGzip.write(output + "network_with_tramLinks.xml.gz", out -> new NetworkWriter(baseNetwork).write(out));
 
         System.out.println("✅ Tram network merged successfully!");
     }
 
     /**
      * Merges tram network into base:
-     * - If a tram link has the same osmID as a link already in the base network → treat as embedded/street-running:
+     * - If a tram link has the same osmID as a link of the base network and runs along it (same snapped end nodes,
+     *   or same direction and overlapping within {@value #EMBEDDING_OFFSET} m, see {@link OsmIdLinkIndex#findAlong})
+     *   → treat as embedded/street-running:
      *   → add "tram" to allowed modes of the existing link
      *   → copy tram-specific attributes (colour, route_ref, operator...) if missing
      * - Otherwise → add as dedicated parallel tram link with id "tram_<osmID>"
      * This gives you a proper multimodal network: shared sections use the same link (shared capacity), dedicated sections have separate links.
+     * Tram nodes are snapped to base nodes within -DsnapTolerance metres (default {@value #DEFAULT_SNAP_TOLERANCE}).
      */
     public static void mergeTramNetworkIntoBase(Network baseNetwork, Network tramNetwork) {
+        mergeTramNetworkIntoBase(baseNetwork, tramNetwork,
+                Double.parseDouble(System.getProperty("snapTolerance", String.valueOf(DEFAULT_SNAP_TOLERANCE))));
+    }
+
+    /**
+     * As {@link #mergeTramNetworkIntoBase(Network, Network)}; a tram node without a base node of the same id is
+     * snapped to the nearest base node within {@code snapTolerance} metres (EPSG:27700), 0 to merge by id only.
+     */
+    public static void mergeTramNetworkIntoBase(Network baseNetwork, Network tramNetwork, double snapTolerance) {
 
         int addedSeparate = 0;
         int mergedEmbedded = 0;
+        int alreadyTram = 0;
+        int collapsed = 0;
 
-        // 1. Add missing nodes (same OSM node id → automatic merge if base network also uses OSM node ids)
-        for (Node node : tramNetwork.getNodes().values()) {
-            if (baseNetwork.getNodes().get(node.getId()) == null) {
-                baseNetwork.addNode(node);
-            }
-        }
+        // 1. Add missing nodes (same OSM node id → automatic merge if base network also uses OSM node ids,
+        //    otherwise a base node on top of the tram node is used)
+        Map<Id<Node>, Node> nodes = snapNodes(baseNetwork, tramNetwork, snapTolerance);
+
+        // osmID → base links, built once instead of scanning the whole base network per tram link; links added by the
+        // merge are not registered, they are never embedding targets
+        OsmIdLinkIndex osmIndex = OsmIdLinkIndex.build(baseNetwork);
 
         // 2. Process tram links
         for (Link tramLink : tramNetwork.getLinks().values()) {
 
             // Get tram's osmID (Long)
-            Object tramOsmObj = tramLink.getAttributes().getAttribute("osmID");
-            if (tramOsmObj == null) {
+            long tramOsmId = OsmIdLinkIndex.osmId(tramLink);
+            if (nodes.get(tramLink.getFromNode().getId()) == nodes.get(tramLink.getToNode().getId())) {
+                // both ends snapped onto the same base node
+                collapsed++;
+                continue;
+            }
+            if (tramOsmId == OsmIdLinkIndex.NO_OSM_ID) {
                 // fallback – very unlikely now
-                addDedicatedTramLink(baseNetwork, tramLink, "tram_fallback_" + tramLink.getId());
+                addDedicatedTramLink(baseNetwork, tramLink, "tram_fallback_" + tramLink.getId(), nodes);
                 addedSeparate++;
                 continue;
             }
 
-            long tramOsmId = (tramOsmObj instanceof Number)
-                    ? ((Number) tramOsmObj).longValue()
-                    : Long.parseLong(tramOsmObj.toString());
-
-            // Find existing link in base with same osmID
-            Link existingLink = baseNetwork.getLinks().values().stream()
-                    .filter(l -> {
-                        Object o = l.getAttributes().getAttribute("osmID");
-                        if (o == null) return false;
-                        long baseId = (o instanceof Number) ? ((Number) o).longValue() : Long.parseLong(o.toString());
-                        return baseId == tramOsmId;
-                    })
-                    .findAny()
-                    .orElse(null);
+            // Find existing link in base with same osmID that this segment runs along
+            Link existingLink = osmIndex.findAlong(tramOsmId, nodes.get(tramLink.getFromNode().getId()),
+                    nodes.get(tramLink.getToNode().getId()), EMBEDDING_OFFSET);
 
             if (existingLink != null) {
                 // === EMBEDDED / STREET-RUNNING: add "tram" mode + copy tram attributes ===
-                Set<String> modes = new HashSet<>(existingLink.getAllowedModes());
-                boolean modeAdded = modes.add("tram");
-                existingLink.setAllowedModes(modes);
+                boolean modeAdded = !existingLink.getAllowedModes().contains("tram");
+                existingLink.setAllowedModes(ModeSets.with(existingLink.getAllowedModes(), "tram"));
 
                 // Copy tram-specific attributes if missing (colour for visualisation, operator, route_ref...)
                 tramLink.getAttributes().getAsMap().forEach((key, value) -> {
-                    if (!key.equals("osmID") && existingLink.getAttributes().getAttribute(key.toString()) == null) {
+                    if (!key.equals(OsmIdLinkIndex.OSM_ID) && existingLink.getAttributes().getAttribute(key.toString()) == null) {
                         existingLink.getAttributes().putAttribute(key.toString(), value);
                     }
                 });
 
-                if (modeAdded) mergedEmbedded++;
+                // several tram segments can run along one longer base link
+                if (modeAdded) mergedEmbedded++; else alreadyTram++;
             } else {
                 // === DEDICATED TRACK: add separate tram link ===
-                Node fromNode = baseNetwork.getNodes().get(tramLink.getFromNode().getId());
-                Node toNode   = baseNetwork.getNodes().get(tramLink.getToNode().getId());
+                Node fromNode = nodes.get(tramLink.getFromNode().getId());
+                Node toNode   = nodes.get(tramLink.getToNode().getId());
 
                 Id<Link> newLinkId = Id.createLinkId("tram_" + tramOsmId);
 
@@ -119,13 +145,84 @@ public class preparePTNetwork {
 
         System.out.println("   Embedded/street-running sections (added 'tram' mode): " + mergedEmbedded);
         System.out.println("   Dedicated sections (added separate link):         " + addedSeparate);
-        System.out.println("   Total tram links processed:                       " + (addedSeparate + mergedEmbedded));
+        System.out.println("   Embedded along a link that already allows tram:   " + alreadyTram);
+        System.out.println("   Total tram links processed:                       " + (addedSeparate + mergedEmbedded + alreadyTram));
+        if (collapsed > 0) {
+            System.out.println("   Skipped (both ends snapped to one node):          " + collapsed);
+        }
+    }
+
+    /**
+     * Tram node id → node in the base network: the base node with the same id, else the nearest base node within
+     * the tolerance, else the tram node itself, which is added to the base network. The nearest-node lookups run
+     * in parallel on a grid over the base nodes; nodes are added in tram network order.
+     */
+    static Map<Id<Node>, Node> snapNodes(Network baseNetwork, Network tramNetwork, double snapTolerance) {
+        Map<Id<Node>, Node> nodes = new HashMap<>();
+        List<Node> unmatched = new ArrayList<>();
+        for (Node node : tramNetwork.getNodes().values()) {
+            Node base = baseNetwork.getNodes().get(node.getId());
+            if (base != null) {
+                nodes.put(node.getId(), base);
+            } else {
+                unmatched.add(node);
+            }
+        }
+
+        Node[] snapped = new Node[unmatched.size()];
+        if (snapTolerance > 0 && !unmatched.isEmpty()) {
+            NodeGridIndex grid = new NodeGridIndex(baseNetwork.getNodes().values(), snapTolerance);
+            IntStream.range(0, snapped.length).parallel()
+                    .forEach(i -> snapped[i] = grid.nearest(unmatched.get(i).getCoord(), snapTolerance));
+        }
+
+        int snappedCount = 0;
+        for (int i = 0; i < snapped.length; i++) {
+            Node node = unmatched.get(i);
+            if (snapped[i] != null) {
+                nodes.put(node.getId(), snapped[i]);
+                snappedCount++;
+            } else {
+                baseNetwork.addNode(node);
+                nodes.put(node.getId(), node);
+            }
+        }
+        System.out.println("   Tram nodes snapped to base nodes within " + snapTolerance + " m:   " + snappedCount
+                + " (added " + (snapped.length - snappedCount) + ")");
+        return nodes;
+    }
+
+    /**
+     * Prints the strongly connected components of every mode and prunes or repairs the islands of the given modes
+     * (see {@link ModeConnectivity}).
+     *
+     * @param maxDistance repair: islands farther from the largest component are pruned instead
+     */
+    public static void checkConnectivity(Network network, String action, Set<String> modes, double maxDistance) {
+        long start = System.currentTimeMillis();
+        Map<String, ModeConnectivity.Report> reports = ModeConnectivity.analyze(network, null);
+        System.out.println("   Connectivity per mode (" + (System.currentTimeMillis() - start) + " ms):");
+        reports.values().forEach(report -> System.out.println("   " + report));
+
+        for (String mode : modes) {
+            ModeConnectivity.Report report = reports.get(mode);
+            if (report == null || report.isStronglyConnected()) {
+                continue;
+            }
+            switch (action) {
+                case "report" -> {
+                }
+                case "prune" -> System.out.println("   Removed " + mode + " from " + ModeConnectivity.prune(network, report) + " island links");
+                case "repair" -> System.out.println("   Connected " + ModeConnectivity.repair(network, report, maxDistance) + " " + mode + " islands");
+                default -> throw new IllegalArgumentException("Unknown connectivity action " + action + " (report, prune or repair)");
+            }
+        }
     }
 
     // Helper for fallback (if no osmID)
-    private static void addDedicatedTramLink(Network baseNetwork, Link tramLink, String idPrefix) {
-        Node fromNode = baseNetwork.getNodes().get(tramLink.getFromNode().getId());
-        Node toNode   = baseNetwork.getNodes().get(tramLink.getToNode().getId());
+    private static void addDedicatedTramLink(Network baseNetwork, Link tramLink, String idPrefix, Map<Id<Node>, Node> nodes) {
+        Node fromNode = nodes.get(tramLink.getFromNode().getId());
+        Node toNode   = nodes.get(tramLink.getToNode().getId());
         Id<Link> newLinkId = Id.createLinkId(idPrefix + tramLink.getId());
         Link newLink = baseNetwork.getFactory().createLink(newLinkId, fromNode, toNode);
         newLink.setLength(tramLink.getLength());
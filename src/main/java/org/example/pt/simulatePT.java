@@ -23,6 +23,7 @@ import org.matsim.core.controler.events.ShutdownEvent;
 import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.population.io.PopulationWriter;
 import org.matsim.core.replanning.strategies.DefaultPlanStrategiesModule;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.collections.CollectionUtils;
@@ -30,8 +31,13 @@ import org.matsim.pt.utils.CreateVehiclesForSchedule;
 import org.matsim.simwrapper.SimWrapperModule;
 import org.matsim.vehicles.Vehicle;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
@@ -53,7 +59,7 @@ public class simulatePT {
     public static void main(String[] args) {
 
         if (args.length < 3) {
-            System.out.println("Usage: java simulatePT <network.xml.gz> <transitSchedule.xml.gz> <transitVehicles.xml.gz> [outputDir]");
+            System.out.println("Usage: java simulatePT <network.xml.gz> <transitSchedule.xml.gz> <transitVehicles.xml.gz> [outputDir] [numberOfPersons]");
             return;
         }
 
@@ -61,7 +67,61 @@ public class simulatePT {
         String scheduleFile = args[1];
         String vehiclesFile = args[2];
         String outputDir = args.length >= 4 ? args[3] : "output_pt_walk_manchester/";
+        // without a number of persons the 10 dummy persons below are used
+        long numberOfPersons = args.length >= 5 ? Long.parseLong(args[4]) : 0;
+
+        Config config = createConfig(networkFile, scheduleFile, vehiclesFile, outputDir);
+
+        // large populations are generated in parallel and streamed to disk, then read like any other plans file
+        if (numberOfPersons > 0) {
+            String populationFile = outputDir + "synthetic_population.xml.gz";
+            try {
+                Files.createDirectories(Path.of(outputDir));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            new SyntheticPopulationGenerator(SyntheticPopulationGenerator.GREATER_MANCHESTER)
+                    .write(populationFile, numberOfPersons, 2025, Runtime.getRuntime().availableProcessors());
+            config.plans().setInputFile(populationFile);
+        }
+
+        // network, schedule, vehicles and population are independent → parse them concurrently
+        Scenario scenario = ParallelInputLoader.loadScenario(config);
 
+        //
+         /*
+        for (Link link : scenario.getNetwork().getLinks().values()) {
+            Set<String> modes = new HashSet<>(link.getAllowedModes());
+            if (modes.contains(TransportMode.walk)) {
+                modes.add("access_walk");
+            }
+            link.setAllowedModes(modes);
+        }
+
+          */
+
+        // create missing transit vehicles (safety)
+        new CreateVehiclesForSchedule(scenario.getTransitSchedule(), scenario.getTransitVehicles()).run();
+
+        // ============================
+        // 10 DUMMY PERSONS – WALK + PT ONLY
+        // ============================
+        if (numberOfPersons == 0) {
+            createDummyPersons(scenario.getPopulation());
+            BlockGzip.write(outputDir + "dummy_population.xml.gz", out -> new PopulationWriter(scenario.getPopulation()).write(out));
+        }
+
+        assignAccessRadiusClasses(scenario);
+
+        // ============================
+        // PRINT ACCESS/EGRESS LINKS AT THE END
+        // ============================
+        Controller controller = createController(scenario);
+        controller.run();
+    }
+
+    /** The walk + PT config of this study, used by {@link #main} and {@link ScenarioSweepRunner}. */
+    static Config createConfig(String networkFile, String scheduleFile, String vehiclesFile, String outputDir) {
         Config config = ConfigUtils.createConfig();
 
         config.network().setInputFile(networkFile);
@@ -78,7 +138,8 @@ public class simulatePT {
         config.controller().setLastIteration(2);
         config.controller().setOutputDirectory(outputDir);
         config.controller().setOverwriteFileSetting(OverwriteFileSetting.overwriteExistingFiles);
-        config.controller().setWriteEventsInterval(2);
+        // XML events; -DeventsFormat=binary writes compact binary files instead (BinaryEventsModule in createController)
+        config.controller().setWriteEventsInterval(xmlEvents() ? 2 : 0);
         config.controller().setWritePlansInterval(2);
 
         //
@@ -86,17 +147,24 @@ public class simulatePT {
         SwissRailRaptorConfigGroup srrConfig = ConfigUtils.addOrGetModule(config, SwissRailRaptorConfigGroup.class);
         srrConfig.setUseIntermodalAccessEgress(true);
 
-        SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet accessWalkSet = new SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet();
-        accessWalkSet.setMode("walk");
-        accessWalkSet.setInitialSearchRadius(500);
-        accessWalkSet.setMaxRadius(5000);
-        srrConfig.addIntermodalAccessEgress(accessWalkSet);
-
-        SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet accessBikeSet = new SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet();
-        accessBikeSet.setMode("bike");
-        accessBikeSet.setInitialSearchRadius(500);
-        accessBikeSet.setMaxRadius(5000);
-        srrConfig.addIntermodalAccessEgress(accessBikeSet);
+        if (AccessRadiusClasses.isEnabled()) {
+            // opt-in: one walk and one bike parameter set per radius class (250 m ... 5000 m), persons are assigned
+            // a class in assignAccessRadiusClasses
+            AccessRadiusClasses.addParameterSets(srrConfig, "walk", AccessRadiusClasses.DEFAULT_RADII, 5000);
+            AccessRadiusClasses.addParameterSets(srrConfig, "bike", AccessRadiusClasses.DEFAULT_RADII, 5000);
+        } else {
+            SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet accessWalkSet = new SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet();
+            accessWalkSet.setMode("walk");
+            accessWalkSet.setInitialSearchRadius(500);
+            accessWalkSet.setMaxRadius(5000);
+            srrConfig.addIntermodalAccessEgress(accessWalkSet);
+
+            SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet accessBikeSet = new SwissRailRaptorConfigGroup.IntermodalAccessEgressParameterSet();
+            accessBikeSet.setMode("bike");
+            accessBikeSet.setInitialSearchRadius(500);
+            accessBikeSet.setMaxRadius(5000);
+            srrConfig.addIntermodalAccessEgress(accessBikeSet);
+        }
 
         /*
 
@@ -199,28 +267,14 @@ public class simulatePT {
         strat.setWeight(1.0);
         config.replanning().addStrategySettings(strat);
 
+        return config;
+    }
 
-        Scenario scenario = ScenarioUtils.loadScenario(config);
-
-        //
-         /*
-        for (Link link : scenario.getNetwork().getLinks().values()) {
-            Set<String> modes = new HashSet<>(link.getAllowedModes());
-            if (modes.contains(TransportMode.walk)) {
-                modes.add("access_walk");
-            }
-            link.setAllowedModes(modes);
-        }
-
-          */
-
-        // create missing transit vehicles (safety)
-        new CreateVehiclesForSchedule(scenario.getTransitSchedule(), scenario.getTransitVehicles()).run();
+    static boolean xmlEvents() {
+        return !"binary".equals(System.getProperty("eventsFormat", "xml"));
+    }
 
-        // ============================
-        // 10 DUMMY PERSONS – WALK + PT ONLY
-        // ============================
-        Population pop = scenario.getPopulation();
+    static void createDummyPersons(Population pop) {
         PopulationFactory pf = pop.getFactory();
         Random rnd = new Random(2025);
 
@@ -263,12 +317,21 @@ public class simulatePT {
             Activity h2 = pf.createActivityFromCoord("home", home);
             plan.addActivity(h2);
         }
+    }
 
-        new PopulationWriter(pop).write(outputDir + "dummy_population.xml.gz");
+    // -DaccessRadiusClasses=true: start every person's access/egress stop search at the smallest radius with at
+    // least 2 stops around all of their activities, instead of 500 m for everyone
+    static void assignAccessRadiusClasses(Scenario scenario) {
+        if (!AccessRadiusClasses.isEnabled()) {
+            return;
+        }
+        TransitStopGridIndex stopIndex = new TransitStopGridIndex(scenario.getTransitSchedule(), null, 250);
+        System.out.println("Access radius classes: " + AccessRadiusClasses.assign(scenario.getPopulation(), stopIndex,
+                AccessRadiusClasses.DEFAULT_RADII, 2));
+    }
 
-        // ============================
-        // PRINT ACCESS/EGRESS LINKS AT THE END
-        // ============================
+    /** Controller with the raptor, instrumentation, events output and access/egress travel time modules. */
+    static Controller createController(Scenario scenario) {
         Controller controller = new Controler(scenario);
         //
         // Override module to bind walk-specific TravelTime
@@ -291,6 +354,43 @@ public class simulatePT {
         // To use the fast pt router (Part 1 of 1)
         controller.addOverridingModule(new SwissRailRaptorModule());
 
+        // wall/CPU time, allocations and GC per iteration phase → JFR events and phase_timings.csv
+        controller.addOverridingModule(new PhaseInstrumentationModule());
+        // per-mode networks for routing built once per network (and shared by sweep variants) instead of per controller
+        controller.addOverridingModule(new ModeSubnetworksModule());
+        if (!xmlEvents()) {
+            controller.addOverridingModule(new BinaryEventsModule(2));
+        }
+
+        // walk and bike travel times for access/egress routing, precomputed per link and speed class. This replaces
+        // MATSim's default (freespeed) travel time of these modes: links are traversed at 1.38889 / 4.16667 m/s, or at
+        // the speed of the person's class, e.g. -DwalkSpeedClasses=senior:1.1 -DbikeSpeedClasses=ebike:6.94444 with
+        // person attributes walkSpeedClass=senior / bikeSpeedClass=ebike (see PrecomputedTravelTime)
+        PrecomputedTravelTime walkTravelTime = new PrecomputedTravelTime(scenario.getNetwork(), scenario.getPopulation(),
+                TransportMode.walk, 1.38889, PrecomputedTravelTime.parseClassSpeeds(System.getProperty("walkSpeedClasses")));
+        PrecomputedTravelTime bikeTravelTime = new PrecomputedTravelTime(scenario.getNetwork(), scenario.getPopulation(),
+                TransportMode.bike, 4.16667, PrecomputedTravelTime.parseClassSpeeds(System.getProperty("bikeSpeedClasses")));
+        controller.addOverridingModule(new AbstractModule() {
+            @Override
+            public void install() {
+                addTravelTimeBinding(TransportMode.walk).toInstance(walkTravelTime);
+                addTravelTimeBinding(TransportMode.bike).toInstance(bikeTravelTime);
+            }
+        });
+
+        // walk and bike legs are routed with ALT landmarks stored next to the network file (other modes: SpeedyALT),
+        // -DlandmarkRouting=false for plain SpeedyALT
+        if (LandmarkRouterFactory.isEnabled()) {
+            LandmarkRouterFactory routerFactory = new LandmarkRouterFactory(List.of(TransportMode.walk, TransportMode.bike),
+                    scenario.getConfig().network().getInputFile(), LandmarkRouterFactory.DEFAULT_LANDMARKS);
+            controller.addOverridingModule(new AbstractModule() {
+                @Override
+                public void install() {
+                    bind(LeastCostPathCalculatorFactory.class).toInstance(routerFactory);
+                }
+            });
+        }
+
         // To use the deterministic pt simulation (Part 2 of 2):
         /*
         controller.configureQSimComponents(components -> {
@@ -317,6 +417,6 @@ public class simulatePT {
 
         //controller.addOverridingModule(new SimWrapperModule());
 
-        controller.run();
+        return controller;
     }
-}
\ No newline at end of file
+}